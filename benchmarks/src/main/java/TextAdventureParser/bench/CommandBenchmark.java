@@ -0,0 +1,113 @@
+package TextAdventureParser.bench;
+
+import TextAdventureParser.Game;
+import TextAdventureParser.WorldTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One benchmark per command type, each driven through Game.parseCommand exactly as
+ * a player's input would be. Throughput and sampled latency are measured per
+ * benchmark; run with the GC profiler (BenchmarkMain does) for allocation per command.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandBenchmark {
+    @Param({ "100", "1000", "10000", "100000", "1000000" })
+    public int worldSize;
+
+    @Param({ "4" })
+    public int aliasesPerItem;
+
+    @Param({ "10" })
+    public int inventorySize;
+
+    private Game game;
+    private NullIO io;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorldTemplate template = SyntheticWorld.template(worldSize, aliasesPerItem, inventorySize, 42);
+        io = new NullIO();
+        game = SyntheticWorld.session(template, inventorySize, io);
+    }
+
+    @Benchmark
+    public long unknownVerb() {
+        game.parseCommand("xyzzy the plugh");
+        return io.getCharsWritten();
+    }
+
+    @Benchmark
+    public long look() {
+        game.parseCommand("look");
+        return io.getCharsWritten();
+    }
+
+    @Benchmark
+    public long inventory() {
+        game.parseCommand("i");
+        return io.getCharsWritten();
+    }
+
+    // findItemByNameOrAlias, unique match
+    @Benchmark
+    public long examineUnique() {
+        game.parseCommand("examine the zircon gem");
+        return io.getCharsWritten();
+    }
+
+    // handleAmbiguityOrNoMatch, two candidates
+    @Benchmark
+    public long examineAmbiguous() {
+        game.parseCommand("x key");
+        return io.getCharsWritten();
+    }
+
+    // handleAmbiguityOrNoMatch, no candidates
+    @Benchmark
+    public long examineMiss() {
+        game.parseCommand("x unicorn horn");
+        return io.getCharsWritten();
+    }
+
+    // handleGo twice, ending where it started
+    @Benchmark
+    public long goRoundTrip() {
+        game.parseCommand("go south");
+        game.parseCommand("go north");
+        return io.getCharsWritten();
+    }
+
+    // handleTakeMulti then handleDropMulti
+    @Benchmark
+    public long takeDrop() {
+        game.parseCommand("take bellows");
+        game.parseCommand("drop bellows");
+        return io.getCharsWritten();
+    }
+
+    // handleUse resolving two noun phrases
+    @Benchmark
+    public long use() {
+        game.parseCommand("use gem on pedestal");
+        return io.getCharsWritten();
+    }
+}
@@ -0,0 +1,38 @@
+package TextAdventureParser.bench;
+
+import TextAdventureParser.GameIO;
+
+/**
+ * GameIO that throws the output away but counts it, so the JIT can't drop the
+ * work that produced it. Has no input.
+ */
+public class NullIO implements GameIO {
+    private long charsWritten;
+
+    @Override
+    public String readLine() {
+        return null;
+    }
+
+    @Override
+    public void print(String text) {
+        charsWritten += text.length();
+    }
+
+    @Override
+    public void println(String text) {
+        charsWritten += text.length() + 1;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public long getCharsWritten() {
+        return charsWritten;
+    }
+}
@@ -0,0 +1,169 @@
+package TextAdventureParser.bench;
+
+import TextAdventureParser.Game;
+import TextAdventureParser.GameIO;
+import TextAdventureParser.Initialize;
+import TextAdventureParser.TimingWheel;
+import TextAdventureParser.WorldScheduler;
+import TextAdventureParser.WorldTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the timing wheel and timed events, exiting with status 1 on the first failure:
+ * timers placed on and around every level boundary expire on exactly their deadline
+ * after cascading down, cancelled timers never expire, cancel and claim agree on who
+ * wins once a timer has expired, and the lantern burns out in a live session.
+ * <pre>
+ * java -cp target/benchmarks.jar TextAdventureParser.bench.SchedulerCheck [timers]
+ * </pre>
+ */
+public class SchedulerCheck {
+
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        checkDeadlines(count, new Random(42));
+        checkCancelAndClaim();
+        checkLantern();
+        System.out.println("All scheduler checks passed");
+    }
+
+    // Deadlines on, just before and just after each level's span, plus random ones up to level 3
+    private static void checkDeadlines(int count, Random random) {
+        TimingWheel wheel = new TimingWheel();
+        List<TimingWheel.Timer> timers = new ArrayList<>();
+        List<TimingWheel.Timer> cancelled = new ArrayList<>();
+        for (int level = 1; level < TimingWheel.LEVELS; level++) {
+            long span = 1L << (level * TimingWheel.SLOT_BITS);
+            for (long deadline = span - 2; deadline <= span + 2; deadline++) {
+                timers.add(new TimingWheel.Timer(null, null, deadline));
+            }
+        }
+        long horizon = 1L << 25;
+        for (int i = 0; i < count; i++) {
+            long deadline = 1 + (long) (Math.pow(random.nextDouble(), 4) * horizon); // Mostly near, some far
+            TimingWheel.Timer timer = new TimingWheel.Timer(null, null, deadline);
+            (i % 3 == 0 ? cancelled : timers).add(timer);
+        }
+        timers.forEach(wheel::add);
+        cancelled.forEach(wheel::add);
+        for (TimingWheel.Timer timer : cancelled) {
+            check(wheel.cancel(timer), "a pending timer cancels");
+            check(!wheel.cancel(timer), "a timer cancels only once");
+        }
+        check(wheel.size() == timers.size(), "size counts pending timers only");
+
+        long last = 0;
+        for (TimingWheel.Timer timer : timers) {
+            last = Math.max(last, timer.getDeadline());
+        }
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        int fired = 0;
+        while (wheel.getTick() < last) {
+            wheel.advance(expired);
+            for (TimingWheel.Timer timer : expired) {
+                check(timer.getDeadline() == wheel.getTick(),
+                        "timer due on tick " + timer.getDeadline() + " expired on " + wheel.getTick());
+                check(wheel.claim(timer), "an expired timer is claimed once");
+            }
+            fired += expired.size();
+            expired.clear();
+        }
+        check(fired == timers.size(), fired + " of " + timers.size() + " timers expired");
+        check(wheel.size() == 0, "the wheel is empty");
+        System.out.printf("wheel: %d timers expired on their deadline over %d ticks, %d cancelled%n",
+                fired, last, cancelled.size());
+    }
+
+    private static void checkCancelAndClaim() {
+        TimingWheel wheel = new TimingWheel();
+        TimingWheel.Timer late = new TimingWheel.Timer(null, null, 0);
+        wheel.add(late);
+        check(late.getDeadline() == 1, "a deadline in the past moves to the next tick");
+
+        TimingWheel.Timer beforeRun = new TimingWheel.Timer(null, null, 1);
+        wheel.add(beforeRun);
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(expired);
+        check(expired.size() == 2, "both timers expire on tick 1");
+        check(wheel.cancel(beforeRun), "an expired timer still cancels before it runs");
+        check(!wheel.claim(beforeRun), "a timer cancelled after expiring doesn't run");
+        check(wheel.claim(late), "an expired timer runs");
+        check(!wheel.cancel(late), "a timer that ran doesn't cancel");
+        check(!wheel.claim(late), "a timer runs once");
+        System.out.println("cancel/claim: ok");
+    }
+
+    // Takes the lantern in a session ticking every millisecond and waits for it to burn out
+    private static void checkLantern() throws InterruptedException {
+        WorldScheduler scheduler = new WorldScheduler(1);
+        RecordingIO io = new RecordingIO();
+        Game game = new Game(WorldTemplate.getDefault(), io);
+        game.setScheduler(scheduler);
+        scheduler.start();
+        try {
+            for (String command : new String[] { "n", "take key", "n", "use rusty key on chest", "take lantern", "drop lantern" }) {
+                game.parseCommand(command);
+            }
+            check(io.contains("The lantern goes out as you set it down."), "dropping the lantern puts it out");
+            check(scheduler.getCancelledTimers() == 1, "putting the lantern out cancels its timer");
+
+            game.parseCommand("take lantern");
+            long wait = Initialize.LANTERN_BURN_TICKS * 10;
+            long deadline = System.currentTimeMillis() + wait;
+            while (scheduler.getFiredEvents() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            check(scheduler.getFiredEvents() == 1, "the lantern burns out within " + wait + " ms");
+            game.parseCommand("inventory"); // Carries the announcement out with its response
+            check(io.contains("Your lantern sputters and goes out."), "the burn-out is announced");
+            game.parseCommand("drop lantern");
+            game.parseCommand("take lantern");
+            check(io.contains("The lantern has no oil left."), "a burned-out lantern stays out");
+        } finally {
+            scheduler.stop();
+        }
+        System.out.println("lantern: ok, " + scheduler);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            System.err.println("FAILED: " + what);
+            System.exit(1);
+        }
+    }
+
+    // Keeps everything the session printed; has no input
+    private static class RecordingIO implements GameIO {
+        private final StringBuilder output = new StringBuilder();
+
+        @Override
+        public String readLine() {
+            return null;
+        }
+
+        @Override
+        public synchronized void print(String text) {
+            output.append(text);
+        }
+
+        @Override
+        public synchronized void println(String text) {
+            output.append(text).append('\n');
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        synchronized boolean contains(String text) {
+            return output.indexOf(text) >= 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package TextAdventureParser.bench;
+
+import TextAdventureParser.Game;
+import TextAdventureParser.Item;
+import TextAdventureParser.SharedWorld;
+import TextAdventureParser.WorldState;
+import TextAdventureParser.WorldTemplate;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that players in one SharedWorld never duplicate or lose an item: several
+ * threads pass the default world's items back and forth with random commands, then
+ * every player drops what it carries and each item must be lying somewhere exactly
+ * once. Exits with status 1 on failure.
+ * <pre>
+ * java -cp target/benchmarks.jar TextAdventureParser.bench.SharedWorldCheck [players] [commands each] [stripes]
+ * </pre>
+ * A single stripe puts every room on one lock, the most contended case.
+ */
+public class SharedWorldCheck {
+    private static final String[] COMMANDS = {
+        "n", "s", "take sword", "drop sword", "take shield and sword", "drop shield", "take key", "drop key",
+        "take rusty key then n", "look", "inventory", "take golden key and go south", "drop golden key"
+    };
+    private static final String[] DROP_EVERYTHING = { "drop sword", "drop shield", "drop rusty", "drop golden" };
+
+    public static void main(String[] args) throws InterruptedException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int stripes = args.length > 2 ? Integer.parseInt(args[2]) : SharedWorld.DEFAULT_STRIPES;
+
+        WorldTemplate template = WorldTemplate.getDefault();
+        SharedWorld world = new SharedWorld(template, stripes);
+        Game[] games = new Game[players];
+        for (int i = 0; i < players; i++) {
+            games[i] = new Game(world, new NullIO());
+        }
+        Thread[] threads = new Thread[players];
+        long start = System.nanoTime();
+        for (int i = 0; i < players; i++) {
+            Game game = games[i];
+            Random random = new Random(i);
+            threads[i] = Thread.ofPlatform().start(() -> {
+                for (int c = 0; c < commands; c++) {
+                    game.parseCommand(COMMANDS[random.nextInt(COMMANDS.length)]);
+                }
+                for (String command : DROP_EVERYTHING) {
+                    game.parseCommand(command);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<Item, Integer> found = new IdentityHashMap<>();
+        WorldState state = world.getState();
+        for (int roomId = 0; roomId < template.getExitGraph().getRoomCount(); roomId++) {
+            for (Item item : state.getRoom(roomId).getItems()) {
+                count(state, item, found);
+            }
+        }
+        boolean ok = true;
+        for (int id = 0; id < template.getItemCount(); id++) {
+            Item item = template.getItem(id);
+            int copies = found.getOrDefault(item, 0);
+            if (copies != 1) {
+                System.err.println("FAILED: " + item.getName() + " found " + copies + " times");
+                ok = false;
+            }
+        }
+        System.out.printf("%d players x %d commands in %.2f s, %s%n", players, commands, elapsed / 1e9, world);
+        if (!ok) {
+            System.exit(1);
+        }
+        System.out.println("Every item is in the world exactly once");
+    }
+
+    // The item and, at any depth, what it contains
+    private static void count(WorldState state, Item item, Map<Item, Integer> found) {
+        found.merge(item, 1, Integer::sum);
+        for (Item content : state.getContents(item)) {
+            count(state, content, found);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package TextAdventureParser.bench;
+
+import TextAdventureParser.Game;
+import TextAdventureParser.WorldCompiler;
+import TextAdventureParser.WorldDefinition;
+import TextAdventureParser.WorldImage;
+import TextAdventureParser.WorldTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates square grid worlds of any size for the benchmarks.
+ * Every room holds one item whose aliases are drawn from a shared word pool, so
+ * aliasesPerItem controls how crowded the alias posting lists get. The start room
+ * (r0) also holds fixed items the benchmarks refer to by name:
+ * rusty key / golden key (ambiguous "key"), zircon gem, onyx pedestal, brass bellows,
+ * plus inventorySize "trinketN" items for the player to pick up.
+ */
+public class SyntheticWorld {
+    private static final String[] ADJECTIVES = {
+        "red", "blue", "green", "old", "new", "small", "large", "dusty", "shiny", "broken",
+        "wooden", "iron", "silver", "heavy", "light", "cracked", "ancient", "odd", "plain", "tiny"
+    };
+    private static final String[] NOUNS = {
+        "lamp", "cup", "book", "coin", "ring", "rope", "box", "bottle", "stone", "scroll",
+        "spoon", "candle", "mask", "bell", "flute", "brush", "comb", "map", "vase", "hat"
+    };
+
+    /**
+     * Builds the world definition, compiles it to an in-memory image and opens a template on it,
+     * the same path a real world file takes.
+     */
+    public static WorldTemplate template(int rooms, int aliasesPerItem, int inventorySize, long seed) {
+        WorldDefinition definition = definition(rooms, aliasesPerItem, inventorySize, seed);
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        try {
+            new WorldCompiler().compile(definition, image);
+            return WorldTemplate.fromImage(new WorldImage(ByteBuffer.wrap(image.toByteArray())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts a session in r0 and picks up the gem and inventorySize trinkets.
+     */
+    public static Game session(WorldTemplate template, int inventorySize, NullIO io) {
+        Game game = new Game(template, io);
+        game.parseCommand("take gem");
+        for (int i = 0; i < inventorySize; i++) {
+            game.parseCommand("take trinket" + i);
+        }
+        return game;
+    }
+
+    public static WorldDefinition definition(int rooms, int aliasesPerItem, int inventorySize, long seed) {
+        Random random = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(rooms));
+        WorldDefinition world = new WorldDefinition();
+        for (int i = 0; i < rooms; i++) {
+            world.addRoom("r" + i, "Room " + i + " of a " + side + " by " + side + " grid.");
+        }
+        for (int i = 0; i < rooms; i++) {
+            int row = i / side;
+            int column = i % side;
+            if (row > 0) world.addExit("r" + i, "north", "r" + (i - side));
+            if (i + side < rooms) world.addExit("r" + i, "south", "r" + (i + side));
+            if (column > 0) world.addExit("r" + i, "west", "r" + (i - 1));
+            if (column + 1 < side && i + 1 < rooms) world.addExit("r" + i, "east", "r" + (i + 1));
+        }
+        world.setStartRoom("r0");
+
+        for (int i = 0; i < rooms; i++) {
+            String noun = NOUNS[random.nextInt(NOUNS.length)];
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + noun;
+            List<String> aliases = new ArrayList<>();
+            for (int a = 0; a < aliasesPerItem; a++) {
+                aliases.add(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + noun);
+            }
+            world.addItem("item" + i, "r" + i, name, "A " + name + ".", aliases);
+        }
+
+        world.addItem("rusty_key", "r0", "rusty key", "A small, rusty iron key.", Arrays.asList("key", "iron key"));
+        world.addItem("golden_key", "r0", "golden key", "A large, shiny golden key.", Arrays.asList("key", "gold key"));
+        world.addItem("gem", "r0", "zircon gem", "A cloudy zircon.", Arrays.asList("gem"));
+        world.addItem("pedestal", "r0", "onyx pedestal", "A black pedestal.", Arrays.asList("pedestal"));
+        world.addItem("bellows", "r0", "brass bellows", "A pair of brass bellows.", Arrays.asList("bellows"));
+        for (int i = 0; i < inventorySize; i++) {
+            world.addItem("trinket" + i, "r0", "trinket" + i, "A trinket.", Arrays.asList("trinket"));
+        }
+        return world;
+    }
+}
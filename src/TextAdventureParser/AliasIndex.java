@@ -0,0 +1,163 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inverted index from alias fragments to the items that carry them.
+ * Every substring of every alias word is a key (see Item's alias keys, which are
+ * Vocabulary ids), so looking up an input word returns exactly the items where
+ * some alias.contains(word) is true.
+ * Rooms and the player each keep one and update it as items come and go.
+ */
+public class AliasIndex {
+    // Open addressing, linear probing; a slot holds word id + 1 (0 is empty), size is a power of two.
+    // Keys are never removed: a key whose items all left keeps a null posting.
+    private int[] keys;
+    private List<Item>[] postings; // By slot; lists keep insertion order so matches come back in list order
+    private int size;
+
+    public AliasIndex() {
+        this.keys = new int[16];
+        this.postings = newPostings(16);
+    }
+
+    // Deep copy, used when a session copies a shared room
+    public AliasIndex(AliasIndex other) {
+        this.keys = other.keys.clone();
+        this.postings = newPostings(keys.length);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (other.postings[slot] != null) {
+                postings[slot] = new ArrayList<>(other.postings[slot]);
+            }
+        }
+        this.size = other.size;
+    }
+
+    public void add(Item item) {
+        for (int key : item.getAliasKeys()) {
+            int slot = slotFor(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key + 1;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = find(key);
+                }
+            }
+            if (postings[slot] == null) {
+                postings[slot] = new ArrayList<>(2);
+            }
+            postings[slot].add(item);
+        }
+    }
+
+    public void remove(Item item) {
+        for (int key : item.getAliasKeys()) {
+            int slot = find(key);
+            List<Item> posting = slot < 0 ? null : postings[slot];
+            if (posting != null) {
+                posting.remove(item);
+                if (posting.isEmpty()) {
+                    postings[slot] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every indexed item whose aliases contain ALL of the given words to matches.
+     * Walks the smallest posting list and checks the other words against each item's
+     * sorted alias keys, so the cost depends on how many items share the rarest word,
+     * not on how many items are indexed.
+     * @param wordIds The Vocabulary ids of the input words (must not be empty; -1 matches nothing).
+     * @param matches The list the matching items are appended to.
+     */
+    public void collectMatches(int[] wordIds, List<Item> matches) {
+        List<Item> smallest = null;
+        int smallestWord = -1;
+        for (int wordId : wordIds) {
+            int slot = wordId < 0 ? -1 : find(wordId);
+            List<Item> posting = slot < 0 ? null : postings[slot];
+            if (posting == null) {
+                return; // One word matches nothing, so nothing matches all words
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+                smallestWord = wordId;
+            }
+        }
+        if (smallest == null) {
+            return;
+        }
+
+        for (Item item : smallest) {
+            boolean allWordsMatch = true;
+            for (int wordId : wordIds) {
+                if (wordId != smallestWord && !item.hasAliasKey(wordId)) {
+                    allWordsMatch = false;
+                    break;
+                }
+            }
+            if (allWordsMatch) {
+                matches.add(item);
+            }
+        }
+    }
+
+    /**
+     * @param words The cleaned, lower-case input words (must not be empty).
+     */
+    public void collectMatches(List<String> words, List<Item> matches) {
+        collectMatches(wordIds(words), matches);
+    }
+
+    // Input words as Vocabulary ids; a word the vocabulary doesn't know is in no alias
+    public static int[] wordIds(List<String> words) {
+        Vocabulary vocabulary = Vocabulary.global();
+        int[] ids = new int[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = vocabulary.id(words.get(i));
+        }
+        return ids;
+    }
+
+    // The key's slot, or the empty slot it would go in
+    private int slotFor(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int find(int key) {
+        int slot = slotFor(key);
+        return keys[slot] == 0 ? -1 : slot;
+    }
+
+    // Ids are dense, so spread them before masking
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        List<Item>[] oldPostings = postings;
+        keys = new int[oldKeys.length * 2];
+        postings = newPostings(keys.length);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int newSlot = slotFor(oldKeys[slot] - 1);
+                keys[newSlot] = oldKeys[slot];
+                postings[newSlot] = oldPostings[slot];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Item>[] newPostings(int count) {
+        return (List<Item>[]) new List<?>[count];
+    }
+}
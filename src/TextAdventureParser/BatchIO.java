@@ -0,0 +1,108 @@
+package TextAdventureParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * GameIO for headless runs: commands come from a transcript instead of a player, and
+ * output goes to a large buffer that is only written when it fills up or the run ends
+ * (or is thrown away entirely). Nothing is flushed between commands.
+ */
+public class BatchIO implements GameIO {
+    public static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private BufferedReader transcript; // Streaming source, or
+    private List<String> commands;     // an in-memory one that can be replayed
+    private int repeat;
+    private int nextCommand;
+    private BufferedWriter out;        // Null when output is discarded
+    private long commandsRead;
+    private long charsWritten;
+
+    /**
+     * Streams commands from a transcript.
+     * @param out Where output goes, or null to discard it.
+     */
+    public BatchIO(BufferedReader transcript, Writer out) {
+        this.transcript = transcript;
+        this.out = out != null ? new BufferedWriter(out, OUTPUT_BUFFER_SIZE) : null;
+    }
+
+    /**
+     * Plays the same list of commands repeat times over, e.g. for load tests.
+     * @param out Where output goes, or null to discard it.
+     */
+    public BatchIO(List<String> commands, int repeat, Writer out) {
+        this.commands = commands;
+        this.repeat = repeat;
+        this.out = out != null ? new BufferedWriter(out, OUTPUT_BUFFER_SIZE) : null;
+    }
+
+    @Override
+    public String readLine() {
+        String line;
+        if (transcript != null) {
+            try {
+                line = transcript.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (nextCommand < commands.size() * (long) repeat) {
+            line = commands.get(nextCommand % commands.size());
+            nextCommand++;
+        } else {
+            line = null;
+        }
+        if (line != null) {
+            commandsRead++;
+        }
+        return line;
+    }
+
+    @Override
+    public void print(String text) {
+        charsWritten += text.length();
+        if (out != null) {
+            try {
+                out.write(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void println(String text) {
+        print(text);
+        print("\n");
+    }
+
+    @Override
+    public void flush() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Flushes the output but leaves the underlying reader/writer open; the caller owns them
+    @Override
+    public void close() {
+        flush();
+    }
+
+    public long getCommandsRead() {
+        return commandsRead;
+    }
+
+    public long getCharsWritten() {
+        return charsWritten;
+    }
+}
@@ -0,0 +1,92 @@
+package TextAdventureParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs a transcript of commands through a game without a console, for regression
+ * runs and load tests. The output is exactly what an interactive player would see
+ * for the same input, so it can be diffed against a recorded run.
+ * <pre>
+ * BatchRunner &lt;transcript | -&gt; [--out &lt;file&gt; | --discard] [--repeat &lt;n&gt;] [--world &lt;image&gt;]
+ *             [--spelling &lt;distance&gt;]
+ * </pre>
+ * --repeat loads the transcript into memory and plays it n times in the same session.
+ * --spelling sets how far off a misspelled word may be and still be corrected (0 for exact matches only).
+ * A summary with the command rate is printed to stderr.
+ */
+public class BatchRunner {
+
+    private BatchRunner() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BatchRunner <transcript|-> [--out <file> | --discard] [--repeat <n>] [--world <image>] [--spelling <distance>]");
+            System.exit(2);
+        }
+        String transcript = args[0];
+        String outFile = null;
+        boolean discard = false;
+        int repeat = 1;
+        int spelling = -1;
+        WorldTemplate template = WorldTemplate.getDefault();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": outFile = args[++i]; break;
+                case "--discard": discard = true; break;
+                case "--repeat": repeat = Integer.parseInt(args[++i]); break;
+                case "--world": template = WorldTemplate.fromImage(WorldImage.open(Path.of(args[++i]))); break;
+                case "--spelling": spelling = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (spelling >= 0) {
+            template.setSpellingDistance(spelling);
+        }
+
+        BufferedReader in = transcript.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BatchIO.OUTPUT_BUFFER_SIZE)
+                : Files.newBufferedReader(Path.of(transcript), StandardCharsets.UTF_8);
+        Writer out = discard ? null
+                : outFile != null ? Files.newBufferedWriter(Path.of(outFile), StandardCharsets.UTF_8)
+                : new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        try (in) {
+            BatchIO io;
+            if (repeat > 1) {
+                List<String> commands = in.lines().toList();
+                io = new BatchIO(commands, repeat, out);
+            } else {
+                io = new BatchIO(in, out);
+            }
+            long start = System.nanoTime();
+            run(template, io);
+            long elapsed = System.nanoTime() - start;
+            System.err.printf("%d commands in %.1f ms (%.0f commands/s), %d chars of output%n",
+                    io.getCommandsRead(), elapsed / 1e6, io.getCommandsRead() / (elapsed / 1e9), io.getCharsWritten());
+            System.err.println(template.getParseCache());
+            System.err.println(template.getMetrics());
+        } finally {
+            template.close();
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Plays one session over the given batch IO until the transcript ends or says quit.
+     */
+    public static void run(WorldTemplate template, BatchIO io) {
+        new Game(template, io).play();
+    }
+}
@@ -0,0 +1,129 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Declarative description of the commands a game understands.
+ * Each verb has one or more words (the first is its name, the rest synonyms) and
+ * a list of patterns tried in order, each bound to an action:
+ * <pre>
+ *   grammar.verb("use")
+ *          .pattern("VERB OBJ PREP OBJ", (game, match) -&gt; ...)
+ *          .pattern("VERB WORDS", (game, match) -&gt; ...);
+ * </pre>
+ * Pattern elements: VERB (always first), OBJ (a noun phrase of one or more words),
+ * PREP (a preposition, see CommandTokenizer) and WORDS (all remaining words, possibly
+ * none; only allowed last). The grammar is compiled once into a CompiledGrammar.
+ */
+public class CommandGrammar {
+    // Pattern element codes, as stored in compiled rules
+    public static final int OBJ = 0;
+    public static final int PREP = 1;
+    public static final int WORDS = 2;
+
+    private List<Verb> verbs;
+
+    public CommandGrammar() {
+        this.verbs = new ArrayList<>();
+    }
+
+    /**
+     * Declares a verb. A verb with no patterns is known (it is in the vocabulary)
+     * but never matches, e.g. "quit", which the game loop handles itself.
+     * @param words The verb's name followed by its synonyms.
+     */
+    public Verb verb(String... words) {
+        if (words.length == 0) {
+            throw new IllegalArgumentException("A verb needs at least one word");
+        }
+        Verb verb = new Verb(words);
+        verbs.add(verb);
+        return verb;
+    }
+
+    public List<Verb> getVerbs() {
+        return Collections.unmodifiableList(verbs);
+    }
+
+    // Every verb word and synonym, e.g. for the vocabulary
+    public List<String> getWords() {
+        List<String> words = new ArrayList<>();
+        for (Verb verb : verbs) {
+            words.addAll(verb.words);
+        }
+        return words;
+    }
+
+    public CompiledGrammar compile() {
+        return new CompiledGrammar(verbs);
+    }
+
+    public static class Verb {
+        final List<String> words;
+        final List<int[]> patterns;
+        final List<BiConsumer<Game, CommandMatch>> actions;
+        boolean changesState;
+
+        private Verb(String[] words) {
+            this.words = Arrays.asList(words.clone());
+            this.patterns = new ArrayList<>();
+            this.actions = new ArrayList<>();
+        }
+
+        public String getName() {
+            return words.get(0);
+        }
+
+        // Marks a verb whose commands can change the game (they are journaled, see CommandJournal)
+        public Verb changesState() {
+            changesState = true;
+            return this;
+        }
+
+        public Verb pattern(String pattern, BiConsumer<Game, CommandMatch> action) {
+            patterns.add(parsePattern(pattern));
+            actions.add(action);
+            return this;
+        }
+    }
+
+    // "VERB OBJ PREP OBJ" -> { OBJ, PREP, OBJ }
+    private static int[] parsePattern(String pattern) {
+        String[] parts = pattern.trim().split("\\s+");
+        if (!parts[0].equals("VERB")) {
+            throw new IllegalArgumentException("Pattern must start with VERB: " + pattern);
+        }
+        int[] elements = new int[parts.length - 1];
+        int objects = 0;
+        for (int i = 1; i < parts.length; i++) {
+            switch (parts[i]) {
+                case "OBJ":
+                    // Two phrases in a row would have no boundary between them
+                    if (i > 1 && elements[i - 2] == OBJ) {
+                        throw new IllegalArgumentException("OBJ must be separated by PREP: " + pattern);
+                    }
+                    if (++objects > CommandMatch.MAX_OBJECTS) {
+                        throw new IllegalArgumentException("Too many OBJ in pattern: " + pattern);
+                    }
+                    elements[i - 1] = OBJ;
+                    break;
+                case "PREP":
+                    elements[i - 1] = PREP;
+                    break;
+                case "WORDS":
+                    if (i != parts.length - 1) {
+                        throw new IllegalArgumentException("WORDS must come last: " + pattern);
+                    }
+                    elements[i - 1] = WORDS;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown pattern element " + parts[i] + ": " + pattern);
+            }
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,336 @@
+package TextAdventureParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the state-changing commands of every session, shared so that
+ * one fsync makes many sessions' commands durable at once (group commit). Sessions
+ * append records into a shared buffer and wait; a single flusher thread writes
+ * whatever has piled up while the previous fsync ran, forces it, and wakes everyone
+ * whose records it covered. Under load a batch holds many commands, so throughput
+ * is not limited to one fsync per command.
+ * <p>
+ * The log is split into segment files (journal-00000001.log, ...). Each session
+ * writes a checkpoint (a SaveCodec snapshot) when it starts, every few hundred
+ * commands, and after the journal moves to a new segment, so recovery only replays
+ * the commands after a session's last checkpoint (see JournalRecovery). Segments
+ * written by this process are deleted once every live session has a durable
+ * checkpoint past them.
+ * <p>
+ * Record layout: type, session id, sequence number, payload length, CRC32 of the
+ * payload, payload (the UTF-8 command line, or the snapshot for a checkpoint).
+ */
+public class CommandJournal implements Closeable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    public static final byte COMMAND = 1;
+    public static final byte CHECKPOINT = 2;
+    public static final byte END = 3;
+    public static final int RECORD_HEADER_SIZE = 25;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int firstSegment; // Older segments belong to earlier runs and are left alone
+    private final Map<Long, JournalSession> liveSessions;
+
+    // Guarded by lock
+    private final ReentrantLock lock; // Not synchronized: sessions wait here on virtual threads
+    private final Condition recordsPending;
+    private final Condition batchDurable;
+    private byte[] pending;
+    private int pendingLength;
+    private long appendedPosition; // Bytes appended since opening; a record's end position is its ticket
+    private long durablePosition;  // Bytes written and forced
+    private IOException failure;
+    private boolean closed;
+    private boolean stopped; // The flusher has exited; nothing more will become durable
+
+    // Only touched by the flusher thread (and read for statistics)
+    private final Thread flusher;
+    private FileChannel channel;
+    private volatile int segment;
+    private long segmentSize;
+    private final List<long[]> segmentStarts; // {segment number, position of its first byte}
+    private volatile long records; // Only incremented under lock
+    private volatile long batches;
+    private volatile long bytesWritten;
+
+    /**
+     * Opens a journal in the directory, starting a new segment after any existing ones.
+     * Run JournalRecovery on the directory first to get the state those segments hold.
+     */
+    public static CommandJournal open(Path directory) throws IOException {
+        return new CommandJournal(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public CommandJournal(Path directory, long segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.liveSessions = new ConcurrentHashMap<>();
+        this.lock = new ReentrantLock();
+        this.recordsPending = lock.newCondition();
+        this.batchDurable = lock.newCondition();
+        this.pending = new byte[1 << 16];
+        this.segmentStarts = new ArrayList<>();
+
+        int last = 0;
+        for (Path existing : listSegments(directory)) {
+            last = Math.max(last, segmentNumber(existing));
+        }
+        this.firstSegment = last + 1;
+        openSegment(firstSegment, 0);
+
+        this.flusher = Thread.ofPlatform().daemon().name("journal-flusher").start(this::flushLoop);
+    }
+
+    /**
+     * Starts journaling a session. Writes a checkpoint of the game as it is now,
+     * so the session can be recovered even if it never journals a command.
+     * @param lastSeq The last sequence number the session used before (0 for a new session).
+     */
+    public JournalSession startSession(long sessionId, Game game, long lastSeq) {
+        JournalSession session = new JournalSession(this, sessionId, lastSeq);
+        liveSessions.put(sessionId, session);
+        session.checkpoint(game);
+        return session;
+    }
+
+    void sessionEnded(JournalSession session) {
+        liveSessions.remove(session.getSessionId());
+    }
+
+    /**
+     * Adds a record to the next batch. Does not wait for it to be written.
+     * @return The record's ticket, to pass to awaitDurable().
+     */
+    long append(byte type, long sessionId, long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.put(type).putLong(sessionId).putLong(seq).putInt(payload.length).putInt((int) crc.getValue());
+
+        lock.lock();
+        try {
+            int needed = pendingLength + RECORD_HEADER_SIZE + payload.length;
+            if (needed > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(needed, pending.length * 2));
+            }
+            System.arraycopy(header.array(), 0, pending, pendingLength, RECORD_HEADER_SIZE);
+            System.arraycopy(payload, 0, pending, pendingLength + RECORD_HEADER_SIZE, payload.length);
+            pendingLength = needed;
+            appendedPosition += RECORD_HEADER_SIZE + payload.length;
+            records++;
+            recordsPending.signal();
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with this ticket (and everything before it) is on disk.
+     */
+    public void awaitDurable(long ticket) throws IOException {
+        lock.lock();
+        try {
+            while (durablePosition < ticket) {
+                if (failure != null) {
+                    throw new IOException("Journal write failed", failure);
+                }
+                if (stopped) {
+                    throw new IOException("Journal is closed");
+                }
+                batchDurable.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments of earlier runs. Only call this once every session recovered
+     * from them has been started again and its first checkpoint is durable.
+     */
+    public void discardEarlierSegments() throws IOException {
+        for (Path old : listSegments(directory)) {
+            if (segmentNumber(old) < firstSegment) {
+                Files.delete(old);
+            }
+        }
+    }
+
+    // Current segment number; sessions checkpoint again when it changes
+    int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Writes what is pending, then stops the flusher. Sessions still waiting get an error.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            recordsPending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void flushLoop() {
+        byte[] batch = new byte[pending.length];
+        while (true) {
+            int batchLength;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pendingLength == 0 && !closed) {
+                    recordsPending.awaitUninterruptibly();
+                }
+                if (pendingLength == 0) {
+                    stopped = true; // Closed: release any waiters
+                    batchDurable.signalAll();
+                    return;
+                }
+                // Swap buffers so sessions can keep appending while this batch is written
+                byte[] full = pending;
+                pending = batch.length >= full.length ? batch : new byte[full.length];
+                batch = full;
+                batchLength = pendingLength;
+                batchEnd = appendedPosition;
+                pendingLength = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (segmentSize >= segmentBytes) {
+                    channel.close();
+                    openSegment(segment + 1, batchEnd - batchLength);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(batch, 0, batchLength);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false); // One fsync for the whole batch
+                segmentSize += batchLength;
+                bytesWritten += batchLength;
+                batches++;
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    stopped = true;
+                    batchDurable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                System.err.println("Journal write failed: " + e.getMessage());
+                return;
+            }
+
+            lock.lock();
+            try {
+                durablePosition = batchEnd;
+                batchDurable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            deleteObsoleteSegments();
+        }
+    }
+
+    private void openSegment(int number, long startPosition) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = number;
+        segmentSize = 0;
+        segmentStarts.add(new long[] { number, startPosition });
+    }
+
+    // A segment can go once every live session has a durable checkpoint in a later segment
+    private void deleteObsoleteSegments() {
+        long needed = Long.MAX_VALUE;
+        for (JournalSession session : liveSessions.values()) {
+            needed = Math.min(needed, session.durableCheckpoint(durablePosition));
+        }
+        while (segmentStarts.size() > 1 && segmentStarts.get(1)[1] < needed) {
+            long[] oldest = segmentStarts.remove(0);
+            try {
+                Files.deleteIfExists(segmentPath(directory, (int) oldest[0]));
+            } catch (IOException e) {
+                System.err.println("Could not delete old journal segment: " + e.getMessage());
+            }
+        }
+    }
+
+    static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("journal-%08d.log", number));
+    }
+
+    static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+
+    // Segment files in the order they were written
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+                files.forEach(segments::add);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    public int getLiveSessions() {
+        return liveSessions.size();
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        long b = batches;
+        return String.format("journal segment %d, %d sessions, %d records in %d fsyncs (%.1f per fsync), %d bytes",
+                segment, liveSessions.size(), records, b, b == 0 ? 0.0 : (double) records / b, bytesWritten);
+    }
+}
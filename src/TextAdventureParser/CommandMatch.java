@@ -0,0 +1,110 @@
+package TextAdventureParser;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The arguments a grammar pattern bound for the current command.
+ * Each session owns one and it is filled in place for every command, so the
+ * views it hands out are only valid until the next command, like the tokenizer's.
+ */
+public class CommandMatch {
+    public static final int MAX_OBJECTS = 2;
+
+    private List<String> tokens; // The whole command, verb first
+    private Slice[] objects;
+    private Slice words;
+    private int prepositionToken; // -1 if the pattern had no PREP
+
+    public CommandMatch() {
+        this.objects = new Slice[MAX_OBJECTS];
+        for (int i = 0; i < MAX_OBJECTS; i++) {
+            objects[i] = new Slice();
+        }
+        this.words = new Slice();
+    }
+
+    // Clears the bindings before a pattern is tried
+    void reset(List<String> tokens) {
+        this.tokens = tokens;
+        for (Slice object : objects) {
+            object.set(0, 0);
+        }
+        words.set(0, 0);
+        prepositionToken = -1;
+    }
+
+    void bindObject(int index, int from, int to) {
+        objects[index].set(from, to);
+    }
+
+    void bindWords(int from, int to) {
+        words.set(from, to);
+    }
+
+    void bindPreposition(int token) {
+        prepositionToken = token;
+    }
+
+    // Freezes the current bindings so they can be cached and replayed with load()
+    ParsedCommand toParsedCommand(int verb, int pattern) {
+        int[] bindings = new int[MAX_OBJECTS * 2 + 3];
+        for (int i = 0; i < MAX_OBJECTS; i++) {
+            bindings[i * 2] = objects[i].from;
+            bindings[i * 2 + 1] = objects[i].to;
+        }
+        bindings[MAX_OBJECTS * 2] = words.from;
+        bindings[MAX_OBJECTS * 2 + 1] = words.to;
+        bindings[MAX_OBJECTS * 2 + 2] = prepositionToken;
+        return new ParsedCommand(verb, pattern, List.copyOf(tokens), bindings);
+    }
+
+    void load(ParsedCommand command) {
+        int[] bindings = command.bindings;
+        tokens = command.tokens;
+        for (int i = 0; i < MAX_OBJECTS; i++) {
+            objects[i].set(bindings[i * 2], bindings[i * 2 + 1]);
+        }
+        words.set(bindings[MAX_OBJECTS * 2], bindings[MAX_OBJECTS * 2 + 1]);
+        prepositionToken = bindings[MAX_OBJECTS * 2 + 2];
+    }
+
+    // The index-th OBJ phrase of the pattern
+    public List<String> object(int index) {
+        return objects[index];
+    }
+
+    // The words bound to WORDS (empty if the pattern had none)
+    public List<String> words() {
+        return words;
+    }
+
+    public String preposition() {
+        return prepositionToken < 0 ? null : tokens.get(prepositionToken);
+    }
+
+    // A reusable view of tokens[from, to)
+    private class Slice extends AbstractList<String> implements RandomAccess {
+        private int from;
+        private int to;
+
+        void set(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return tokens.get(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
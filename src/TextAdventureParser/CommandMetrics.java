@@ -0,0 +1,253 @@
+package TextAdventureParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the commands of every session on a world,
+ * kept per verb: calls, time from reading the line to the end of its handler, and
+ * bytes allocated meanwhile, plus unknown verbs and how noun phrases resolved.
+ * Everything is recorded with striped adders, so sessions never wait on each other.
+ * <p>
+ * The numbers can be read over JMX (see registerMBeans) or as text with the "stats" command.
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+    private final VerbMetrics[] verbs; // By grammar verb number
+    private final LongAdder unknown;
+    private final LongAdder empty;
+    private final LongAdder uniqueResolutions;
+    private final LongAdder ambiguousResolutions;
+    private final LongAdder failedResolutions;
+    private final com.sun.management.ThreadMXBean threads; // Null if allocation can't be measured
+
+    /**
+     * One verb's numbers.
+     */
+    public static class VerbMetrics implements VerbMetricsMXBean {
+        private final String verb;
+        private final LatencyHistogram latency;
+        private final LongAdder allocatedBytes;
+        private final LongAdder allocationSamples;
+
+        VerbMetrics(String verb) {
+            this.verb = verb;
+            this.latency = new LatencyHistogram();
+            this.allocatedBytes = new LongAdder();
+            this.allocationSamples = new LongAdder();
+        }
+
+        @Override
+        public String getVerb() {
+            return verb;
+        }
+
+        @Override
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return latency.getMeanNanos() / 1e3;
+        }
+
+        @Override
+        public double getMedianMicros() {
+            return latency.getPercentileNanos(50) / 1e3;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return latency.getPercentileNanos(99) / 1e3;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return latency.getMaxNanos() / 1e3;
+        }
+
+        @Override
+        public double getAllocatedBytesPerCall() {
+            long samples = allocationSamples.sum();
+            return samples == 0 ? -1 : (double) allocatedBytes.sum() / samples;
+        }
+
+        void reset() {
+            latency.reset();
+            allocatedBytes.reset();
+            allocationSamples.reset();
+        }
+    }
+
+    public CommandMetrics(CompiledGrammar grammar) {
+        this.verbs = new VerbMetrics[grammar.getVerbCount()];
+        for (int v = 0; v < verbs.length; v++) {
+            verbs[v] = new VerbMetrics(grammar.getVerbName(v));
+        }
+        this.unknown = new LongAdder();
+        this.empty = new LongAdder();
+        this.uniqueResolutions = new LongAdder();
+        this.ambiguousResolutions = new LongAdder();
+        this.failedResolutions = new LongAdder();
+
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean candidate
+                && candidate.isThreadAllocatedMemorySupported() && candidate.isThreadAllocatedMemoryEnabled()) {
+            bean = candidate;
+        }
+        this.threads = bean;
+    }
+
+    /**
+     * Bytes the current thread has allocated so far, to pass back to commandDone().
+     * @return -1 if that can't be measured, e.g. on a JVM without the extension or for a virtual thread.
+     */
+    public long allocatedBytes() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Records a command that was dispatched to a verb.
+     * @param startNanos System.nanoTime() when the command was read.
+     * @param startAllocated allocatedBytes() when the command was read.
+     */
+    public void commandDone(int verb, long startNanos, long startAllocated) {
+        VerbMetrics metrics = verbs[verb];
+        metrics.latency.record(System.nanoTime() - startNanos);
+        if (startAllocated >= 0) {
+            long allocated = allocatedBytes();
+            if (allocated >= startAllocated) {
+                metrics.allocatedBytes.add(allocated - startAllocated);
+                metrics.allocationSamples.increment();
+            }
+        }
+    }
+
+    public void unknownVerb() {
+        unknown.increment();
+    }
+
+    public void emptyCommand() {
+        empty.increment();
+    }
+
+    // Called by ItemResolver for every phrase it actually searches for
+    public void resolved(Resolution resolution) {
+        if (resolution.isUnique()) {
+            uniqueResolutions.increment();
+        } else if (resolution.isAmbiguous()) {
+            ambiguousResolutions.increment();
+        } else {
+            failedResolutions.increment();
+        }
+    }
+
+    public VerbMetrics getVerb(int verb) {
+        return verbs[verb];
+    }
+
+    @Override
+    public long getCommands() {
+        long calls = 0;
+        for (VerbMetrics verb : verbs) {
+            calls += verb.getCalls();
+        }
+        return calls;
+    }
+
+    @Override
+    public long getUnknownCommands() {
+        return unknown.sum();
+    }
+
+    @Override
+    public long getEmptyCommands() {
+        return empty.sum();
+    }
+
+    @Override
+    public long getUniqueResolutions() {
+        return uniqueResolutions.sum();
+    }
+
+    @Override
+    public long getAmbiguousResolutions() {
+        return ambiguousResolutions.sum();
+    }
+
+    @Override
+    public long getFailedResolutions() {
+        return failedResolutions.sum();
+    }
+
+    @Override
+    public boolean isAllocationTracked() {
+        return threads != null;
+    }
+
+    @Override
+    public void reset() {
+        for (VerbMetrics verb : verbs) {
+            verb.reset();
+        }
+        unknown.reset();
+        empty.reset();
+        uniqueResolutions.reset();
+        ambiguousResolutions.reset();
+        failedResolutions.reset();
+    }
+
+    /**
+     * Registers this object and one bean per verb with the platform MBean server.
+     * @param world Tells the worlds of one process apart in the object names.
+     */
+    public void registerMBeans(String world) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String quotedWorld = ObjectName.quote(world);
+        server.registerMBean(this, new ObjectName("TextAdventureParser:type=CommandMetrics,world=" + quotedWorld));
+        for (VerbMetrics verb : verbs) {
+            server.registerMBean(verb, new ObjectName("TextAdventureParser:type=VerbMetrics,world=" + quotedWorld
+                    + ",verb=" + ObjectName.quote(verb.getVerb())));
+        }
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder(256);
+        text.append(String.format("Commands: %d (%d unknown, %d empty)%n", getCommands(), getUnknownCommands(), getEmptyCommands()));
+        text.append(String.format("Lookups: %d unique, %d ambiguous, %d not found%n",
+                getUniqueResolutions(), getAmbiguousResolutions(), getFailedResolutions()));
+        text.append(String.format("%-10s %8s %9s %9s %9s %9s %10s%n", "verb", "calls", "mean us", "p50 us", "p99 us", "max us", "bytes/call"));
+        boolean unmeasured = false;
+        for (VerbMetrics verb : verbs) {
+            if (verb.getCalls() == 0) {
+                continue;
+            }
+            double bytes = verb.getAllocatedBytesPerCall();
+            unmeasured |= bytes < 0;
+            text.append(String.format("%-10s %8d %9.1f %9.1f %9.1f %9.1f %10s%n", verb.getVerb(), verb.getCalls(),
+                    verb.getMeanMicros(), verb.getMedianMicros(), verb.getP99Micros(), verb.getMaxMicros(),
+                    bytes < 0 ? "-" : String.format("%.0f", bytes)));
+        }
+        if (unmeasured) {
+            // The JVM only counts allocation per platform thread, and server sessions run on virtual ones
+            text.append(String.format("bytes/call is - where it can't be measured: commands run on virtual threads%n"
+                    + "(server sessions), or on a JVM without per-thread allocation counters%n"));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("commands %d (%d unknown), lookups %d unique / %d ambiguous / %d not found",
+                getCommands(), getUnknownCommands(), getUniqueResolutions(), getAmbiguousResolutions(), getFailedResolutions());
+    }
+}
@@ -0,0 +1,27 @@
+package TextAdventureParser;
+
+/**
+ * JMX view of a world's CommandMetrics: totals over every verb.
+ * Registered as TextAdventureParser:type=CommandMetrics,world=&lt;name&gt;.
+ */
+public interface CommandMetricsMXBean {
+    long getCommands();
+
+    long getUnknownCommands();
+
+    long getEmptyCommands();
+
+    long getUniqueResolutions();
+
+    long getAmbiguousResolutions();
+
+    long getFailedResolutions();
+
+    // False when the JVM can't measure allocation for the threads sessions run on
+    boolean isAllocationTracked();
+
+    // The same text as the "stats" command
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,220 @@
+package TextAdventureParser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Splits a command line into words in a single pass, lower-casing as it goes
+ * and dropping noise words ("a", "the", ...). Conjunctions ("and", "then") are
+ * dropped too, but where each one stood is kept, so a line holding several
+ * commands can be split (see Game). The tokenizer owns its buffers and is reused
+ * for every command, so the views it hands out are only valid until the next call
+ * to tokenize().
+ */
+public class CommandTokenizer {
+    // Token classes returned by classify()
+    public static final int WORD = 0;
+    public static final int NOISE = 1;
+    public static final int PREPOSITION = 2;
+    public static final int CONJUNCTION = 3;
+
+    // The words classify() recognizes, for adding to the vocabulary
+    public static final List<String> NOISE_WORDS = List.of("a", "an", "the", "my");
+    public static final List<String> PREPOSITIONS = List.of("on", "with", "in", "to");
+    public static final List<String> CONJUNCTIONS = List.of("and", "then");
+
+    private Vocabulary vocabulary;
+    private StringBuilder text;  // Lower-cased copy of the current input
+    private int[] tokenStart;    // Span of each kept token within text
+    private int[] tokenEnd;
+    private int[] tokenIds;      // Vocabulary id per token, -1 for unknown words
+    private String[] tokenWords; // Canonical or materialized String per token, filled lazily
+    private int tokenCount;
+    private int[] conjunctions;  // Per conjunction: start and end in the input, and the index of the token after it
+    private int conjunctionCount;
+    private Tokens allTokens;
+    private Tokens argumentTokens;
+
+    public CommandTokenizer(Vocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+        this.text = new StringBuilder(64);
+        this.tokenStart = new int[8];
+        this.tokenEnd = new int[8];
+        this.tokenIds = new int[8];
+        this.tokenWords = new String[8];
+        this.conjunctions = new int[6];
+        this.allTokens = new Tokens(0);
+        this.argumentTokens = new Tokens(1);
+    }
+
+    /**
+     * Tokenizes the input, replacing the previous result.
+     * @return A view of all kept words; the verb is element 0.
+     */
+    public Tokens tokenize(CharSequence input) {
+        text.setLength(0);
+        tokenCount = 0;
+        conjunctionCount = 0;
+        int length = input.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? input.charAt(i) : ' ';
+            if (Character.isWhitespace(c)) {
+                if (start >= 0) {
+                    endToken(start, text.length(), i);
+                    start = -1;
+                }
+                continue;
+            }
+            if (start < 0) {
+                start = text.length();
+            }
+            text.append(Character.toLowerCase(c));
+        }
+        return allTokens;
+    }
+
+    // Everything after the verb, as a view over the same buffers
+    public Tokens arguments() {
+        return argumentTokens;
+    }
+
+    // The number of conjunctions in the last input
+    public int conjunctionCount() {
+        return conjunctionCount;
+    }
+
+    // Where the conjunction starts in the input
+    public int conjunctionStart(int conjunction) {
+        return conjunctions[conjunction * 3];
+    }
+
+    // Where the input goes on after the conjunction
+    public int conjunctionEnd(int conjunction) {
+        return conjunctions[conjunction * 3 + 1];
+    }
+
+    // The index of the first word after the conjunction (the word count if none follows)
+    public int tokenAfterConjunction(int conjunction) {
+        return conjunctions[conjunction * 3 + 2];
+    }
+
+    // inputEnd is where the token ends in the input; one input char is one text char
+    private void endToken(int start, int end, int inputEnd) {
+        int type = classify(text, start, end);
+        if (type == CONJUNCTION) {
+            if (conjunctionCount * 3 == conjunctions.length) {
+                conjunctions = Arrays.copyOf(conjunctions, conjunctions.length * 2);
+            }
+            conjunctions[conjunctionCount * 3] = inputEnd - (end - start);
+            conjunctions[conjunctionCount * 3 + 1] = inputEnd;
+            conjunctions[conjunctionCount * 3 + 2] = tokenCount;
+            conjunctionCount++;
+        }
+        if (type == NOISE || type == CONJUNCTION) {
+            text.setLength(start); // Noise words are never seen by the handlers
+            return;
+        }
+        if (tokenCount == tokenStart.length) {
+            int capacity = tokenCount * 2;
+            tokenStart = Arrays.copyOf(tokenStart, capacity);
+            tokenEnd = Arrays.copyOf(tokenEnd, capacity);
+            tokenIds = Arrays.copyOf(tokenIds, capacity);
+            tokenWords = Arrays.copyOf(tokenWords, capacity);
+        }
+        tokenStart[tokenCount] = start;
+        tokenEnd[tokenCount] = end;
+        tokenIds[tokenCount] = vocabulary.id(text, start, end);
+        tokenWords[tokenCount] = null;
+        tokenCount++;
+    }
+
+    public static boolean isPreposition(CharSequence word) {
+        return classify(word, 0, word.length()) == PREPOSITION;
+    }
+
+    /**
+     * Classifies text[start, end) without creating a String.
+     * Noise words: see NOISE_WORDS. Prepositions: see PREPOSITIONS. Conjunctions: see CONJUNCTIONS.
+     */
+    public static int classify(CharSequence text, int start, int end) {
+        switch (end - start) {
+            case 1:
+                return text.charAt(start) == 'a' ? NOISE : WORD;
+            case 2: {
+                char a = text.charAt(start);
+                char b = text.charAt(start + 1);
+                if ((a == 'a' && b == 'n') || (a == 'm' && b == 'y')) return NOISE;
+                if ((a == 'o' && b == 'n') || (a == 'i' && b == 'n') || (a == 't' && b == 'o')) return PREPOSITION;
+                return WORD;
+            }
+            case 3:
+                if (regionIs(text, start, "the")) return NOISE;
+                if (regionIs(text, start, "and")) return CONJUNCTION;
+                return WORD;
+            case 4:
+                if (regionIs(text, start, "then")) return CONJUNCTION;
+                if (regionIs(text, start, "with")) return PREPOSITION;
+                return WORD;
+            default:
+                return WORD;
+        }
+    }
+
+    private static boolean regionIs(CharSequence text, int start, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read-only list view over the current tokens, starting at a fixed offset.
+     * Known words come back as their vocabulary instance; unknown words are
+     * turned into a String the first time they are read.
+     */
+    public class Tokens extends AbstractList<String> implements RandomAccess {
+        private final int offset;
+
+        private Tokens(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int token = offset + index;
+            String word = tokenWords[token];
+            if (word == null) {
+                int id = tokenIds[token];
+                word = id >= 0 ? vocabulary.getWord(id) : text.substring(tokenStart[token], tokenEnd[token]);
+                tokenWords[token] = word;
+            }
+            return word;
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, tokenCount - offset);
+        }
+
+        // The word's Vocabulary id, or -1 if the vocabulary doesn't know it
+        public int id(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return tokenIds[offset + index];
+        }
+
+        public int classify(int index) {
+            int token = offset + index;
+            return CommandTokenizer.classify(text, tokenStart[token], tokenEnd[token]);
+        }
+    }
+}
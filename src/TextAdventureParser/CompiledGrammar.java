@@ -0,0 +1,242 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A CommandGrammar compiled for dispatch. Verb words go into a perfect hash
+ * table (hash and displace: a first hash picks a bucket, and each bucket has
+ * a seed chosen at compile time so its words land in distinct slots), so finding
+ * the verb costs two hashes and one comparison whatever the number of synonyms.
+ * Patterns are then tried in order by a small deterministic matcher that binds
+ * arguments into the session's CommandMatch, and the result is frozen into a
+ * ParsedCommand that the ParseCache can hand back for repeated input.
+ * Immutable once built, so one instance is shared by every session.
+ */
+public class CompiledGrammar {
+    private static final int MAX_SEED = 1 << 16; // Seeds tried per bucket before the table is grown
+
+    private String[] slotWords;  // Verb word in each slot (null if free)
+    private int[] slotVerbs;     // Index into the verb arrays below
+    private int[] bucketSeeds;
+    private int slotMask;
+    private int bucketMask;
+
+    private String[] verbNames;
+    private int[][][] verbPatterns; // verbPatterns[verb][pattern] = pattern elements after VERB
+    private BiConsumer<Game, CommandMatch>[][] verbActions;
+    private boolean[] verbChangesState;
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // Generic array creation
+    CompiledGrammar(List<CommandGrammar.Verb> verbs) {
+        int verbCount = verbs.size();
+        verbNames = new String[verbCount];
+        verbPatterns = new int[verbCount][][];
+        verbActions = new BiConsumer[verbCount][];
+        verbChangesState = new boolean[verbCount];
+        List<String> words = new ArrayList<>();
+        List<Integer> wordVerbs = new ArrayList<>();
+        for (int v = 0; v < verbCount; v++) {
+            CommandGrammar.Verb verb = verbs.get(v);
+            verbNames[v] = verb.getName();
+            verbPatterns[v] = verb.patterns.toArray(new int[0][]);
+            verbActions[v] = verb.actions.toArray(new BiConsumer[0]);
+            verbChangesState[v] = verb.changesState;
+            for (String word : verb.words) {
+                words.add(word);
+                wordVerbs.add(v);
+            }
+        }
+
+        // Start at twice the number of words and grow until every bucket finds a seed
+        int slots = 2;
+        while (slots < words.size() * 2) {
+            slots <<= 1;
+        }
+        while (!buildTable(words, wordVerbs, slots)) {
+            slots <<= 1;
+        }
+    }
+
+    /**
+     * Finds the verb for tokens[0] and binds the arguments of the first pattern that matches.
+     * @return The parsed command, or null if the verb is unknown or none of its patterns fit.
+     */
+    public ParsedCommand parse(CommandTokenizer.Tokens tokens, CommandMatch match) {
+        int verb = findVerb(tokens.get(0));
+        if (verb < 0) {
+            return null;
+        }
+        int[][] patterns = verbPatterns[verb];
+        for (int p = 0; p < patterns.length; p++) {
+            match.reset(tokens);
+            if (matches(patterns[p], tokens, match)) {
+                return match.toParsedCommand(verb, p);
+            }
+        }
+        return null;
+    }
+
+    // Runs a parsed command's action on a session, with its arguments bound into match
+    public void execute(Game game, ParsedCommand command, CommandMatch match) {
+        match.load(command);
+        verbActions[command.verb][command.pattern].accept(game, match);
+    }
+
+    // True if the command's verb was declared with changesState()
+    public boolean changesState(ParsedCommand command) {
+        return verbChangesState[command.verb];
+    }
+
+    /**
+     * @return The verb index for a word, or -1 if no verb has that word.
+     */
+    public int findVerb(String word) {
+        int bucket = mix(word.hashCode()) & bucketMask;
+        int slot = seededHash(word, bucketSeeds[bucket]) & slotMask;
+        String candidate = slotWords[slot];
+        return candidate != null && candidate.equals(word) ? slotVerbs[slot] : -1;
+    }
+
+    public String getVerbName(int verb) {
+        return verbNames[verb];
+    }
+
+    public int getVerbCount() {
+        return verbNames.length;
+    }
+
+    public int getTableSize() {
+        return slotWords.length;
+    }
+
+    // Binds the words after the verb to the pattern elements; true if they fit exactly
+    private static boolean matches(int[] pattern, CommandTokenizer.Tokens tokens, CommandMatch match) {
+        int size = tokens.size();
+        int position = 1; // Token 0 is the verb
+        int objects = 0;
+        for (int e = 0; e < pattern.length; e++) {
+            switch (pattern[e]) {
+                case CommandGrammar.OBJ: {
+                    // A phrase runs up to the next preposition if the pattern expects one, else to the end
+                    int end = size;
+                    if (e + 1 < pattern.length && pattern[e + 1] == CommandGrammar.PREP) {
+                        end = position;
+                        while (end < size && tokens.classify(end) != CommandTokenizer.PREPOSITION) {
+                            end++;
+                        }
+                    }
+                    if (end == position) {
+                        return false; // Empty phrase
+                    }
+                    match.bindObject(objects++, position, end);
+                    position = end;
+                    break;
+                }
+                case CommandGrammar.PREP:
+                    if (position == size || tokens.classify(position) != CommandTokenizer.PREPOSITION) {
+                        return false;
+                    }
+                    match.bindPreposition(position++);
+                    break;
+                default: // WORDS
+                    match.bindWords(position, size);
+                    position = size;
+                    break;
+            }
+        }
+        return position == size;
+    }
+
+    private boolean buildTable(List<String> words, List<Integer> wordVerbs, int slots) {
+        int buckets = Math.max(1, slots >> 2);
+        slotMask = slots - 1;
+        bucketMask = buckets - 1;
+        slotWords = new String[slots];
+        slotVerbs = new int[slots];
+        bucketSeeds = new int[buckets];
+
+        List<List<Integer>> bucketWords = new ArrayList<>();
+        for (int b = 0; b < buckets; b++) {
+            bucketWords.add(new ArrayList<>());
+        }
+        for (int w = 0; w < words.size(); w++) {
+            bucketWords.get(mix(words.get(w).hashCode()) & bucketMask).add(w);
+        }
+
+        // Place the fullest buckets first, while most slots are still free
+        Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (a, b) -> bucketWords.get(b).size() - bucketWords.get(a).size());
+
+        int[] bucketSlots = new int[words.size()];
+        for (int b : order) {
+            List<Integer> members = bucketWords.get(b);
+            if (members.isEmpty()) {
+                break;
+            }
+            boolean placed = false;
+            for (int seed = 0; seed < MAX_SEED && !placed; seed++) {
+                placed = true;
+                for (int i = 0; i < members.size() && placed; i++) {
+                    String word = words.get(members.get(i));
+                    int slot = seededHash(word, seed) & slotMask;
+                    placed = slotWords[slot] == null;
+                    for (int j = 0; j < i && placed; j++) {
+                        placed = bucketSlots[j] != slot;
+                    }
+                    bucketSlots[i] = slot;
+                }
+                if (placed) {
+                    bucketSeeds[b] = seed;
+                    for (int i = 0; i < members.size(); i++) {
+                        slotWords[bucketSlots[i]] = words.get(members.get(i));
+                        slotVerbs[bucketSlots[i]] = wordVerbs.get(members.get(i));
+                    }
+                }
+            }
+            if (!placed) {
+                // Equal words always collide, whatever the seed
+                if (hasDuplicate(members, words)) {
+                    throw new IllegalArgumentException("A verb word is declared twice");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasDuplicate(List<Integer> members, List<String> words) {
+        for (int i = 0; i < members.size(); i++) {
+            for (int j = i + 1; j < members.size(); j++) {
+                if (words.get(members.get(i)).equals(words.get(members.get(j)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // FNV-1a over the characters, started from the seed, then finalized
+    private static int seededHash(String word, int seed) {
+        int hash = 0x811c9dc5 ^ (seed * 0x9e3779b9);
+        for (int i = 0; i < word.length(); i++) {
+            hash = (hash ^ word.charAt(i)) * 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 finalizer, spreads the bits of String.hashCode() before masking
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,40 @@
+package TextAdventureParser;
+
+import java.util.Scanner;
+
+/**
+ * GameIO for the classic single-player console game.
+ */
+public class ConsoleIO implements GameIO {
+    private Scanner scanner;
+
+    public ConsoleIO() {
+        this.scanner = new Scanner(System.in);
+    }
+
+    @Override
+    public String readLine() {
+        System.out.flush();
+        return scanner.hasNextLine() ? scanner.nextLine() : null;
+    }
+
+    @Override
+    public void print(String text) {
+        System.out.print(text);
+    }
+
+    @Override
+    public void println(String text) {
+        System.out.println(text);
+    }
+
+    @Override
+    public void flush() {
+        System.out.flush();
+    }
+
+    @Override
+    public void close() {
+        scanner.close();
+    }
+}
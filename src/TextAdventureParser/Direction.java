@@ -0,0 +1,40 @@
+package TextAdventureParser;
+
+/**
+ * The directions an exit can lead in. The ordinal doubles as the
+ * column index used by the compiled exit graph.
+ */
+public enum Direction {
+    NORTH("north"),
+    SOUTH("south"),
+    EAST("east"),
+    WEST("west"),
+    UP("up"),
+    DOWN("down");
+
+    private final String word;
+
+    Direction(String word) {
+        this.word = word;
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * Maps a (lower-case) word typed by the player or used in the world data to a direction.
+     * @return The direction, or null if the word is not a direction.
+     */
+    public static Direction fromWord(String word) {
+        switch (word) {
+            case "north": case "n": return NORTH;
+            case "south": case "s": return SOUTH;
+            case "east":  case "e": return EAST;
+            case "west":  case "w": return WEST;
+            case "up":    case "u": return UP;
+            case "down":  case "d": return DOWN;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Compiled form of the "roomId:direction" -> roomId exits table.
+ * Rooms are numbered 0..n-1 and each room's exits are stored as one contiguous
+ * row (compressed sparse rows), sorted by direction. Moving and listing exits
+ * only touch the current room's row and never build strings.
+ * Rooms either all live in memory, or come from a room source such as a RegionCache.
+ */
+public class ExitGraph {
+    public static final int NO_EXIT = -1;      // No exit in that direction
+    public static final int MISSING_ROOM = -2; // Exit points at a room id that is not in the world map
+    private static final Direction[] DIRECTIONS = Direction.values(); // values() clones on every call
+
+    private int roomCount;
+    private Room[] rooms;                 // Room by numeric id when the whole world is in memory
+    private IntFunction<Room> roomSource; // Otherwise asked for every room (it does its own caching)
+    private IntFunction<String> roomKeys; // World map key by numeric id
+    private int[] rowStart;       // Exits of room r live in [rowStart[r], rowStart[r + 1])
+    private byte[] exitDirection; // Direction ordinal of each exit
+    private int[] exitTarget;     // Destination room id of each exit (or MISSING_ROOM)
+    private List<String> invalidExits; // Exit keys left out because their room or direction is unknown
+
+    /**
+     * Numbers every room in the world map and compiles the exits table.
+     * Room ids are assigned in sorted key order so they are stable between runs.
+     * @param worldMap All rooms keyed by their string id.
+     * @param exitsMap Exits keyed by "roomId:direction". Keys with an unknown room or
+     *                 direction are left out and listed by getInvalidExits(), for the validator.
+     * @return The compiled graph. Each room's id is set as a side effect.
+     */
+    public static ExitGraph compile(Map<String, Room> worldMap, Map<String, String> exitsMap) {
+        List<String> keys = new ArrayList<>(worldMap.keySet());
+        Collections.sort(keys);
+
+        ExitGraph graph = new ExitGraph();
+        graph.invalidExits = new ArrayList<>();
+        int roomCount = keys.size();
+        graph.roomCount = roomCount;
+        graph.rooms = new Room[roomCount];
+        graph.roomKeys = keys::get;
+        for (int id = 0; id < roomCount; id++) {
+            Room room = worldMap.get(keys.get(id));
+            room.setId(id);
+            graph.rooms[id] = room;
+        }
+
+        // First pass: resolve every exit into a dense (room, direction) table
+        int directionCount = DIRECTIONS.length;
+        int[] dense = new int[roomCount * directionCount];
+        Arrays.fill(dense, NO_EXIT);
+        int exitCount = 0;
+        for (Map.Entry<String, String> exit : exitsMap.entrySet()) {
+            String key = exit.getKey();
+            int colon = key.indexOf(':');
+            Room from = colon < 0 ? null : worldMap.get(key.substring(0, colon));
+            Direction direction = colon < 0 ? null : Direction.fromWord(key.substring(colon + 1));
+            if (from == null || direction == null) {
+                graph.invalidExits.add(key); // No room and direction to store it under
+                continue;
+            }
+            Room to = worldMap.get(exit.getValue());
+            int slot = from.getId() * directionCount + direction.ordinal();
+            if (dense[slot] == NO_EXIT) {
+                exitCount++;
+            }
+            dense[slot] = to != null ? to.getId() : MISSING_ROOM;
+        }
+
+        // Second pass: squeeze the dense table into rows holding only real exits
+        graph.rowStart = new int[roomCount + 1];
+        graph.exitDirection = new byte[exitCount];
+        graph.exitTarget = new int[exitCount];
+        int next = 0;
+        for (int id = 0; id < roomCount; id++) {
+            graph.rowStart[id] = next;
+            for (int d = 0; d < directionCount; d++) {
+                int target = dense[id * directionCount + d];
+                if (target != NO_EXIT) {
+                    graph.exitDirection[next] = (byte) d;
+                    graph.exitTarget[next] = target;
+                    next++;
+                }
+            }
+        }
+        graph.rowStart[roomCount] = next;
+        return graph;
+    }
+
+    /**
+     * Wraps exit rows that were compiled ahead of time (see WorldImage).
+     * @param roomSource Returns the (frozen) room for an id; called on every getRoom().
+     */
+    public static ExitGraph fromRows(int[] rowStart, byte[] exitDirection, int[] exitTarget,
+                                     IntFunction<Room> roomSource, IntFunction<String> roomKeys) {
+        ExitGraph graph = new ExitGraph();
+        graph.rowStart = rowStart;
+        graph.exitDirection = exitDirection;
+        graph.exitTarget = exitTarget;
+        graph.roomCount = rowStart.length - 1;
+        graph.roomSource = roomSource;
+        graph.roomKeys = roomKeys;
+        graph.invalidExits = Collections.emptyList(); // The compiler rejects them
+        return graph;
+    }
+
+    private ExitGraph() {
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public Room getRoom(int roomId) {
+        return rooms != null ? rooms[roomId] : roomSource.apply(roomId);
+    }
+
+    public String getRoomKey(int roomId) {
+        return roomKeys.apply(roomId);
+    }
+
+    // Keys of the exits table that name no known room or direction, so no one can take them
+    public List<String> getInvalidExits() {
+        return Collections.unmodifiableList(invalidExits);
+    }
+
+    /**
+     * @return The destination room id, NO_EXIT if there is no such exit,
+     *         or MISSING_ROOM if the exit leads to a room that does not exist.
+     */
+    public int getExit(int roomId, Direction direction) {
+        for (int e = rowStart[roomId]; e < rowStart[roomId + 1]; e++) {
+            if (exitDirection[e] == direction.ordinal()) {
+                return exitTarget[e];
+            }
+        }
+        return NO_EXIT;
+    }
+
+    // Exits of a room are the indexes firstExit(room) .. endExit(room) - 1
+    public int firstExit(int roomId) {
+        return rowStart[roomId];
+    }
+
+    public int endExit(int roomId) {
+        return rowStart[roomId + 1];
+    }
+
+    public Direction getExitDirection(int exit) {
+        return DIRECTIONS[exitDirection[exit]];
+    }
+
+    public int getExitTarget(int exit) {
+        return exitTarget[exit];
+    }
+}
@@ -1,283 +1,832 @@
 package TextAdventureParser;
 
-import java.util.Scanner;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Map;
-import java.util.function.Consumer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class Game {
     private Player player;
-    private Scanner scanner;
-//    private Map<String, Consumer<List<String>>> commands; // Change signature to accept List<String>
-    private Map<String, Consumer<List<String>>> commands; 
+    private GameIO io; // Session-scoped input/output, never the global console directly
+    private ResponseWriter out; // Buffers each turn's output into one write to io
+    private CompiledGrammar grammar; // Verbs and argument patterns, shared by all sessions, see WorldTemplate
+    private CommandMatch match; // Arguments bound by the grammar, reused for every command
+    private ParseCache parseCache; // Lines any session has parsed before, see WorldTemplate
+    private CommandMetrics metrics; // Per-verb counters and latencies, shared by all sessions
     private Map<String, String> primaryCommands; // New field for primary commands/descriptions
-    private Map<String, Room> worldMap;
-    private Map<String, String> exitsMap;
-    private static final List<String> NOISE_WORDS = Arrays.asList("a", "an", "the", "and", "then", "my");
-    private static final List<String> PREPOSITIONS = Arrays.asList("on", "with", "in", "to");
-
-
-    public static void main(String[] args) {
-        Game game = new Game();
+    private ExitGraph exitGraph; // exitsMap compiled into per-room adjacency rows
+    private WorldState world; // This session's changes on top of the shared world template
+    private Vocabulary vocabulary; // The template's words, for item word ids
+    private CommandTokenizer tokenizer; // Reused for every command line
+    private SpellingIndex verbSpelling; // Corrects misspelled verbs; null to leave them unknown
+    private SpellingIndex itemWords;    // Alias words, so a chain isn't split at an item near a verb
+    private InteractionRules rules; // What using one item on another does, shared by all sessions
+    private ItemResolver resolver; // Noun phrase lookups, memoized per turn
+    private Scope scope; // The items in reach and where each one is
+    private SessionSaver saver; // Autosaves the session, if set
+    private JournalSession journal; // Journals state-changing commands, if set
+    private WorldScheduler scheduler; // Runs this session's timed events, if set
+    private ReentrantLock turnLock; // Held while a command or timed event runs, so they take turns
+    private Queue<TimingWheel.Timer> events; // Expired timers posted by the scheduler, not run yet
+    private AtomicBoolean drainScheduled; // A thread is on its way to run the posted events
+    private boolean atPrompt; // The player has the prompt and hasn't answered yet
+    private boolean promptInterrupted; // An event printed below the prompt, so it needs printing again
+    private boolean ended;
+    private boolean operator; // May use operator commands (stats); network players may not
+    private TimingWheel.Timer lanternBurn; // Burns the lit lantern out; null while it isn't lit
+    private boolean lanternSpent; // This session's lantern has burned out
+    private boolean commandFailed; // Set by the current command's handler if it couldn't do what was asked
+    private SharedWorld shared; // The world this session plays in with others; null for a world of its own
+    private int playerId; // For the player's lock stripe in a shared world
+    private SharedWorld.Hold held; // The stripes of the current room and player while a command runs
+
+
+    // Optional arguments: a compiled world image (see WorldCompiler) to play instead of the
+    // built-in world, a save file to resume from and autosave to, and a journal directory to
+    // recover from and journal commands to ("-" skips any of them)
+    public static void main(String[] args) throws IOException {
+        WorldTemplate template = args.length > 0 && !args[0].equals("-")
+                ? WorldTemplate.fromImage(WorldImage.open(Path.of(args[0])))
+                : WorldTemplate.getDefault();
+        WorldValidator.check(template);
+        Game game = new Game(template, new ConsoleIO());
+        if (args.length > 1 && !args[1].equals("-")) {
+            Path saveFile = Path.of(args[1]);
+            SessionSaver.load(game, saveFile);
+            game.setSaver(new SessionSaver(saveFile));
+        }
+        if (args.length > 2 && !args[2].equals("-")) {
+            Path directory = Path.of(args[2]);
+            JournalRecovery.SessionLog log = JournalRecovery.scan(directory).getSession(CONSOLE_SESSION);
+            if (log != null) {
+                log.restore(game); // Picks up where a crashed run stopped
+            }
+            CommandJournal journal = CommandJournal.open(directory);
+            JournalSession session = journal.startSession(CONSOLE_SESSION, game, log != null ? log.getLastSeq() : 0);
+            session.awaitDurable();
+            journal.discardEarlierSegments();
+            game.setJournal(session);
+        }
         game.play();
+        template.close();
     }
 
+    // Session id of the console player in a journal
+    public static final long CONSOLE_SESSION = 1;
+
     public Game() {
-        scanner = new Scanner(System.in);
-        primaryCommands = new HashMap<>(); // Initialize the new map
-        commands = new HashMap<>();
-        worldMap = new HashMap<>();
-        exitsMap = new HashMap<>();
-
-        // Use the new Initialize class to set everything up
-        Initialize.initializeCommands(commands, primaryCommands, this); // Pass 'this' (the Game instance)
-        String startRoomId = Initialize.initializeRoomsAndItems(worldMap, exitsMap);
-        
-        player = new Player(worldMap.get(startRoomId)); // Use the returned start room ID
+        this(new ConsoleIO());
+    }
+
+    public Game(GameIO io) {
+        this(WorldTemplate.getDefault(), io);
+    }
+
+    /**
+     * Starts a new session on a shared world template. Only the player and the
+     * session's overlay are created here, so this is cheap however big the world is.
+     */
+    public Game(WorldTemplate template, GameIO io) {
+        this(template, null, io);
+    }
+
+    /**
+     * Starts a new player in a world shared with other sessions.
+     */
+    public Game(SharedWorld shared, GameIO io) {
+        this(shared.getTemplate(), shared, io);
+    }
+
+    private Game(WorldTemplate template, SharedWorld shared, GameIO io) {
+        this.io = io;
+        this.out = new ResponseWriter(io);
+        this.grammar = template.getGrammar();
+        this.match = new CommandMatch();
+        this.parseCache = template.getParseCache();
+        this.metrics = template.getMetrics();
+        this.primaryCommands = template.getPrimaryCommands();
+        this.exitGraph = template.getExitGraph();
+        this.world = shared != null ? shared.getState() : new WorldState(template);
+        this.shared = shared;
+        this.vocabulary = template.getVocabulary();
+        this.tokenizer = new CommandTokenizer(vocabulary);
+        this.verbSpelling = template.getVerbSpelling();
+        this.itemWords = template.getAliasSpelling();
+        this.rules = template.getRules();
+        this.operator = true;
+
+        if (shared != null) {
+            playerId = shared.newPlayer();
+            SharedWorld.Hold start = shared.lock(shared.roomStripe(template.getStartRoomId()));
+            try {
+                player = new Player(world.getRoom(template.getStartRoomId()));
+                scope = new Scope(world, player);
+            } finally {
+                start.close();
+            }
+        } else {
+            player = new Player(world.getRoom(template.getStartRoomId()));
+            scope = new Scope(world, player);
+        }
+        resolver = new ItemResolver(player, scope, metrics, template.getAliasSpelling());
+        turnLock = new ReentrantLock();
+        events = new ConcurrentLinkedQueue<>();
+        drainScheduled = new AtomicBoolean();
     }
 
     public void play() {
-        System.out.println("Welcome to the Adventure Game!");
-        printLocationInfo();
+        turnLock.lock();
+        try {
+            out.println("Welcome to the Adventure Game!");
+            enterWorld();
+            try {
+                printLocationInfo();
+            } finally {
+                leaveWorld();
+            }
+            prompt();
+        } finally {
+            turnLock.unlock();
+        }
 
         while (true) {
-            System.out.print("> ");
-            String inputLine = scanner.nextLine();
-            if (inputLine.equalsIgnoreCase("quit") || inputLine.equalsIgnoreCase("exit")) {
-                System.out.println("Goodbye!");
-                break;
+            String inputLine = io.readLine(); // Timed events may run meanwhile
+            turnLock.lock();
+            try {
+                atPrompt = false;
+                if (inputLine == null) {
+                    break; // Input ended or the client disconnected
+                }
+                if (inputLine.equalsIgnoreCase("quit") || inputLine.equalsIgnoreCase("exit")) {
+                    endJournal();
+                    out.println("Goodbye!");
+                    out.flush();
+                    break;
+                }
+                // Use the single-command processor; its output goes out with the next prompt
+                executeCommand(inputLine);
+                if (saver != null) {
+                    saver.turnEnded(this); // Only encodes the changes; the write happens in the background
+                }
+                prompt();
+            } finally {
+                turnLock.unlock();
+            }
+        }
+        turnLock.lock();
+        try {
+            ended = true; // Events still to come are dropped
+            if (saver != null) {
+                saver.save(this);
+                saver.close();
             }
-            // Use the single-command processor, as the multi-noun logic is within parseCommand now
-            parseCommand(inputLine);
+        } finally {
+            turnLock.unlock();
+        }
+        io.close();
+    }
+
+    // Called with the turn lock held
+    private void prompt() {
+        out.print("> ");
+        awaitJournal();
+        out.flush(); // The whole turn's response, prompt included, goes out in one write
+        atPrompt = true;
+    }
+
+    public void setSaver(SessionSaver saver) {
+        checkOwnWorld();
+        this.saver = saver;
+    }
+
+    public void setJournal(JournalSession journal) {
+        checkOwnWorld();
+        this.journal = journal;
+    }
+
+    private void checkOwnWorld() {
+        if (shared != null) {
+            throw new IllegalStateException("Sessions in a shared world are not saved or journalled");
+        }
+    }
+
+    // Whether the player may use operator commands; true for the console and batch runner
+    public void setOperator(boolean operator) {
+        this.operator = operator;
+    }
+
+    public void setScheduler(WorldScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Runs an event in this session after a number of scheduler ticks. The event runs
+     * between commands, never during one, and may change the session's world and
+     * announce() what happened. A journalled session checkpoints after its events,
+     * since recovery can't replay them.
+     * @throws IllegalStateException If the session has no scheduler.
+     */
+    public TimingWheel.Timer schedule(long delayTicks, Consumer<Game> event) {
+        if (scheduler == null) {
+            throw new IllegalStateException("This session has no world scheduler");
         }
-        scanner.close();
+        return scheduler.schedule(this, delayTicks, event);
     }
 
     /**
-     * Parses the user input into a single verb and a list of nouns, then executes the action.
+     * @return False if the event has already run or was cancelled before.
      */
-    public void parseCommand(String input) {
-        String cleanInput = input.trim().toLowerCase();
+    public boolean cancel(TimingWheel.Timer timer) {
+        return scheduler != null && scheduler.cancel(timer);
+    }
 
-        // Remove noise words before splitting into parts
-        List<String> words = Arrays.stream(cleanInput.split(" "))
-                .filter(word -> !NOISE_WORDS.contains(word) && !word.isEmpty())
-                .collect(Collectors.toList());
+    /**
+     * Tells the player something a timed event did. Sent at once if the player is
+     * waiting at the prompt, otherwise with the response to the current command.
+     */
+    public void announce(String text) {
+        if (atPrompt && !promptInterrupted) {
+            out.println(); // Off the prompt's line
+            promptInterrupted = true;
+        }
+        out.println(text);
+    }
 
-        if (words.isEmpty()) {
-            System.out.println("Please enter a command.");
+    // The lantern lights when the player picks it up, if the session runs timed events,
+    // and burns out LANTERN_BURN_TICKS later unless it is put down first
+    private void lanternTaken(Item item) {
+        if (scheduler == null || lanternBurn != null || !item.getName().equals(Initialize.LANTERN)) {
             return;
         }
+        if (lanternSpent) {
+            out.println("The lantern has no oil left.");
+            return;
+        }
+        lanternBurn = schedule(Initialize.LANTERN_BURN_TICKS, Game::lanternBurnedOut);
+        out.println("The lantern flickers into light.");
+    }
 
-        String commandWord = words.get(0);
-        List<String> nouns = words.stream().skip(1).collect(Collectors.toList());
+    private void lanternDropped(Item item) {
+        if (lanternBurn != null && item.getName().equals(Initialize.LANTERN) && cancel(lanternBurn)) {
+            lanternBurn = null;
+            out.println("The lantern goes out as you set it down.");
+        }
+    }
 
-        // Look up the command in our map
-        Consumer<List<String>> action = commands.get(commandWord);
+    private void lanternBurnedOut() {
+        lanternBurn = null;
+        lanternSpent = true;
+        announce("Your lantern sputters and goes out. It has burned all its oil.");
+    }
 
-        if (action != null) {
-            // Execute the associated function, passing the list of nouns
-            action.accept(nouns);
-        } else {
-            System.out.println("I don't know how to " + commandWord + ".");
+    // Called by the scheduler's ticker; the events run on a virtual thread that waits its turn
+    void post(TimingWheel.Timer timer) {
+        events.add(timer);
+        if (drainScheduled.compareAndSet(false, true)) {
+            Thread.startVirtualThread(this::drainEvents);
         }
     }
 
-    // --- Helper and Command Handler Methods ---
+    private void drainEvents() {
+        do {
+            turnLock.lock();
+            try {
+                runEvents();
+            } finally {
+                turnLock.unlock();
+            }
+            drainScheduled.set(false);
+            // An event posted after the last poll but before the flag was cleared is still ours
+        } while (!events.isEmpty() && drainScheduled.compareAndSet(false, true));
+    }
 
-    // Utility method to find an item by name or any of its aliases
-    // Returns the item wrapped in Optional, or Optional.empty() if no unique match found
-    private Optional<Item> findItemByNameOrAlias(String nameOrAlias) {
-        // Clean the input name/alias by removing noise words
-        List<String> cleanInputWords = Arrays.stream(nameOrAlias.toLowerCase().split(" "))
-                .filter(word -> !NOISE_WORDS.contains(word) && !word.isEmpty())
-                .collect(Collectors.toList());
-
-        if (cleanInputWords.isEmpty()) {
-            return Optional.empty(); // Cannot search for an empty string
-        }
-
-        List<Item> potentialMatches = new ArrayList<>();
-
-        // Helper to check for matches in a given list of items
-        Consumer<List<Item>> checkMatches = (itemList) -> {
-            for (Item item : itemList) {
-                // Check if ALL input words appear in the item's aliases
-                boolean allWordsMatch = true;
-                for (String word : cleanInputWords) {
-                    // Check if any alias for the item contains the current input word
-                    boolean wordFoundInAlias = item.getAliases().stream().anyMatch(alias -> alias.contains(word));
-                    if (!wordFoundInAlias) {
-                        allWordsMatch = false;
-                        break;
-                    }
-                }
-                if (allWordsMatch) {
-                    potentialMatches.add(item);
+    // Called with the turn lock held
+    private void runEvents() {
+        boolean ran = false;
+        TimingWheel.Timer timer;
+        while ((timer = events.poll()) != null) {
+            if (ended) {
+                scheduler.drop(timer);
+            } else if (scheduler.claim(timer)) {
+                enterWorld();
+                try {
+                    timer.getEvent().accept(this);
+                } finally {
+                    leaveWorld();
                 }
+                ran = true;
             }
-        };
-
-        // Check both inventory and room items
-        checkMatches.accept(player.getItemInventoryList());
-        checkMatches.accept(player.getCurrentRoom().getItems());
-
-        // Handle ambiguity:
-        if (potentialMatches.size() == 1) {
-            return Optional.of(potentialMatches.get(0));
-        } else if (potentialMatches.size() > 1) {
-            // Ambiguous input, the calling method must handle this by printing clarification
-            return Optional.empty(); 
-        } else {
-            // No match found
-            return Optional.empty();
+        }
+        if (ran && journal != null) {
+            // Recovery replays commands, not events, so the journal needs the state they left
+            journal.checkpoint(this);
+        }
+        if (promptInterrupted) {
+            promptInterrupted = false;
+            out.print("> ");
+            awaitJournal();
+            out.flush();
+            io.flush(); // Nobody is about to read a line, which is what flushes a turn's response
         }
     }
 
-    // Helper method to find a Room ID by its object reference
-    private String getRoomIdByObject(Room targetRoom) {
-        for (Map.Entry<String, Room> entry : worldMap.entrySet()) {
-            if (entry.getValue().equals(targetRoom)) {
-                return entry.getKey();
-            }
+    // Holds the response back until the commands it answers are on disk, so a player
+    // never sees the result of a command that recovery would not replay
+    private void awaitJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.awaitDurable();
+        } catch (IOException e) {
+            System.err.println("Journal failed, continuing without it: " + e.getMessage());
+            journal = null;
         }
-        return null;
     }
-    
-    // Helper method to print room info and exits from the exits map
-    private void printLocationInfo() {
-        Room current = player.getCurrentRoom();
-        String currentRoomId = getRoomIdByObject(current);
-        System.out.println("\n" + current.getDescription());
-
-        System.out.print("Exits: ");
-        boolean foundExit = false;
-        for (String key : exitsMap.keySet()) {
-            if (key.startsWith(currentRoomId + ":")) {
-                String direction[] = key.split(":");
-                System.out.print(direction[1] + " ");
-                foundExit = true;
-            }
+
+    private void endJournal() {
+        if (journal == null) {
+            return;
         }
-        if (!foundExit) System.out.print("none");
-        System.out.println();
-        
-        System.out.print("Items in the room: ");
-        if (current.getItems().isEmpty()) {
-            System.out.println("none");
-        } else {
-            for (Item item : current.getItems()) {
-                 System.out.print(item.getName() + " ");
-            }
-            System.out.println();
+        try {
+            journal.end();
+        } catch (IOException e) {
+            System.err.println("Could not end the journal session: " + e.getMessage());
         }
+        journal = null;
+    }
+
+    // Runs a command from the journal during recovery: same dispatch path, no output
+    void replay(String input) {
+        executeCommand(input);
+        out.discard();
     }
 
-    // Command Handlers (private, using Consumer<List<String>> signature)
+    // For SaveCodec
+    Player getPlayer() {
+        return player;
+    }
+
+    WorldState getWorld() {
+        return world;
+    }
+
+    Scope getScope() {
+        return scope;
+    }
 
     /**
-     * Handles the "use [item] on/with [target]" command structure using robust alias searching.
+     * Parses the user input into a single verb and a list of nouns, then executes the action.
+     * The response is written to the session's IO before returning.
      */
-    public void handleUse(List<String> words) {
-        // Expected format: [item part 1] [preposition] [target part 2]
-        if (words.size() < 3) {
-            System.out.println("Use what on what? Try 'use [item] on [target]'.");
+    public void parseCommand(String input) {
+        turnLock.lock();
+        try {
+            executeCommand(input);
+            awaitJournal();
+            out.flush();
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    // parseCommand without the flush, so play() can send the response together with the prompt.
+    // A line may chain several commands ("take key then go north"); they all run in this
+    // turn, sharing the turn's lookups, and the chain stops at the first one that fails.
+    private boolean executeCommand(String input) {
+        resolver.invalidate(); // Lookups from the previous turn are stale
+        enterWorld();
+        try {
+            return runCommand(input, true);
+        } finally {
+            leaveWorld(); // Before the response goes out, so a slow client holds nobody up
+        }
+    }
+
+    // In a shared world: takes the stripes of the player's room and inventory, then catches up
+    // with whatever other players did to the room since this session last looked at it
+    private void enterWorld() {
+        if (shared == null) {
             return;
         }
+        int roomId = player.getCurrentRoom().getId();
+        held = shared.lock(shared.roomStripe(roomId), shared.playerStripe(playerId));
+        player.setCurrentRoom(world.getRoom(roomId)); // Someone may have made the session copy meanwhile
+        scope.enterRoom(player.getCurrentRoom());
+        resolver.invalidate();
+    }
 
-        int prepIndex = -1;
-        String preposition = null;
+    private void leaveWorld() {
+        if (held != null) {
+            held.close();
+            held = null;
+        }
+    }
 
-        // Find the index of the preposition (on, with, in, to)
-        for (int i = 0; i < words.size(); i++) {
-            if (PREPOSITIONS.contains(words.get(i))) {
-                prepIndex = i;
-                preposition = words.get(i);
-                break;
+    // The player has moved: the new room's items come into reach, and in a shared world
+    // its stripe replaces the old room's (one room at a time, so the order holds)
+    private void enterRoom() {
+        if (held != null) {
+            leaveWorld();
+            enterWorld();
+            return;
+        }
+        scope.enterRoom(player.getCurrentRoom());
+        resolver.invalidate(); // Lookups of the old room's items, e.g. earlier in a chain
+    }
+
+    /**
+     * Runs one command, or a chain of them if chains is true and the line holds one.
+     * @return False if the command failed (see commandFailed).
+     */
+    private boolean runCommand(String input, boolean chains) {
+        long startNanos = System.nanoTime();
+        long startAllocated = metrics.allocatedBytes();
+        commandFailed = false;
+
+        // Repeated lines come straight from the cache, without tokenizing or matching
+        ParsedCommand command = parseCache.get(input);
+        if (command == null) {
+            // Single pass: lower-case, split and drop noise words into the tokenizer's reusable buffers
+            CommandTokenizer.Tokens words = tokenizer.tokenize(input);
+
+            if (words.isEmpty()) {
+                metrics.emptyCommand();
+                out.println("Please enter a command.");
+                return false;
+            }
+            if (chains && tokenizer.conjunctionCount() > 0) {
+                List<String> commands = splitChain(input, words);
+                if (commands != null) {
+                    return runChain(commands);
+                }
+            }
+
+            // Find the verb and bind its arguments
+            command = grammar.parse(words, match);
+            if (command == null && verbSpelling != null && grammar.findVerb(words.get(0)) < 0) {
+                String typed = words.get(0); // The retry reuses the tokenizer's buffers
+                command = parseWithCorrectedVerb(words);
+                if (command == null) {
+                    metrics.unknownVerb();
+                    out.println("I don't know how to " + typed + ".");
+                    return false;
+                }
+                // Not cached: a repeat of the typo should show the correction again
+            } else if (command == null) {
+                metrics.unknownVerb();
+                out.println("I don't know how to " + words.get(0) + ".");
+                return false;
+            } else {
+                parseCache.put(input, command);
             }
         }
 
-        if (prepIndex == -1 || prepIndex == 0 || prepIndex == words.size() - 1) {
-            System.out.println("Please specify a proper preposition and items/objects.");
-            return;
+        // Run the verb's action on this session
+        grammar.execute(this, command, match);
+        if (journal != null && grammar.changesState(command)) {
+            journal.commandAccepted(this, input);
         }
+        metrics.commandDone(command.verb, startNanos, startAllocated);
+        return !commandFailed;
+    }
 
-        // Extract the raw item name part (before the preposition) 
-        // and the raw target name part (after the preposition)
-        String itemAlias = String.join(" ", words.subList(0, prepIndex));
-        String targetAlias = String.join(" ", words.subList(prepIndex + 1, words.size()));
+    // Splits the line at each conjunction that a verb follows ("take key then go north"),
+    // leaving the ones that join nouns ("take key and lamp") to the command. A misspelled
+    // verb that would be corrected on its own starts a command too ("n then tke key"),
+    // unless it is an item's word ("take sword and helm" isn't "help").
+    // Returns the commands as typed, or null if the line is one command.
+    private List<String> splitChain(String input, CommandTokenizer.Tokens words) {
+        List<String> commands = null;
+        int from = 0;       // Where the current command starts in the input
+        int firstWord = 0;  // Its first word
+        for (int c = 0; c < tokenizer.conjunctionCount(); c++) {
+            int next = tokenizer.tokenAfterConjunction(c);
+            if (next == firstWord) {
+                from = tokenizer.conjunctionEnd(c); // Leading or doubled ("and then go north")
+            } else if (next < words.size() && startsCommand(words.get(next))) {
+                if (commands == null) {
+                    commands = new ArrayList<>();
+                }
+                commands.add(input.substring(from, tokenizer.conjunctionStart(c)));
+                from = tokenizer.conjunctionEnd(c);
+                firstWord = next;
+            }
+        }
+        if (commands == null) {
+            return null;
+        }
+        commands.add(input.substring(from));
+        return commands;
+    }
+
+    private boolean startsCommand(String word) {
+        if (grammar.findVerb(word) >= 0) {
+            return true;
+        }
+        return verbSpelling != null && (itemWords == null || !itemWords.contains(word))
+                && verbSpelling.correct(word) != null;
+    }
+
+    // The commands of one line, in order; each is journalled on its own
+    private boolean runChain(List<String> commands) {
+        for (String command : commands) {
+            if (!runCommand(command, false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // For handlers that couldn't do what was asked; stops the rest of a chain
+    private void fail(String message) {
+        commandFailed = true;
+        out.println(message);
+    }
+
+    // Only reached once the exact verb lookup has failed. Retries the line with the verb
+    // respelled as the nearest known verb, if exactly one is nearest, and says so.
+    private ParsedCommand parseWithCorrectedVerb(CommandTokenizer.Tokens words) {
+        String verb = verbSpelling.correct(words.get(0));
+        if (verb == null) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder(verb);
+        for (int i = 1; i < words.size(); i++) {
+            line.append(' ').append(words.get(i));
+        }
+        ParsedCommand command = grammar.parse(tokenizer.tokenize(line), match);
+        if (command != null) {
+            out.println("(Assuming you meant \"" + verb + "\".)");
+        }
+        return command;
+    }
 
-        // Use the robust helper method to find the actual item objects using the alias strings
-        Optional<Item> itemInInventoryOpt = findItemByNameOrAlias(itemAlias);
-        Optional<Item> targetInRoomOpt = findItemByNameOrAlias(targetAlias);
+    // --- Helper and Command Handler Methods ---
+
+    // The player's room, copied into this session first if it is still the shared template room
+    private Room currentRoomForWrite() {
+        Room room = world.mutableRoom(player.getCurrentRoom());
+        player.setCurrentRoom(room);
+        return room;
+    }
+
+    // Helper method to print room info and exits from the exits map
+    private void printLocationInfo() {
+        out.print(renderRoom(player.getCurrentRoom()));
+    }
+
+    /**
+     * The "look" view of a room. It only depends on the room's contents and its exits,
+     * so it is built once and cached on the room until an item is added or removed.
+     */
+    private String renderRoom(Room room) {
+        String view = room.getCachedView();
+        if (view != null) {
+            return view;
+        }
+        StringBuilder text = new StringBuilder(128);
+        text.append('\n').append(room.getDescription()).append('\n');
+
+        text.append("Exits: ");
+        int firstExit = exitGraph.firstExit(room.getId());
+        int endExit = exitGraph.endExit(room.getId());
+        for (int exit = firstExit; exit < endExit; exit++) {
+            text.append(exitGraph.getExitDirection(exit).getWord()).append(' ');
+        }
+        if (firstExit == endExit) text.append("none");
+        text.append('\n');
+
+        text.append("Items in the room: ");
+        if (room.getItems().isEmpty()) {
+            text.append("none");
+        } else {
+            for (Item item : room.getItems()) {
+                text.append(item.getName()).append(' ');
+            }
+        }
+        text.append('\n');
+
+        view = text.toString();
+        room.setCachedView(view);
+        return view;
+    }
+
+    // Command Handlers (public, called by CompiledGrammar with the arguments its pattern bound)
+
+    /**
+     * Handles the "use [item] on/with [target]" command structure using robust alias searching.
+     * The grammar has already split the words around the first preposition; what the
+     * command does comes from the world's InteractionRules.
+     */
+    public void handleUse(List<String> itemAlias, String preposition, List<String> targetAlias) {
+        // Resolve each phrase once; the result also says where the match was found
+        Resolution item = resolver.resolve(itemAlias);
+        Resolution target = resolver.resolve(targetAlias);
 
         // 1. Validate the source item is in inventory
-        if (itemInInventoryOpt.isEmpty() || !player.getItemInventoryList().contains(itemInInventoryOpt.get())) {
-            handleAmbiguityOrNoMatch(itemAlias);
+        if (!item.isUniqueIn(Resolution.Location.INVENTORY)) {
+            handleAmbiguityOrNoMatch(item, itemAlias);
             return;
         }
-        Item itemInInventory = itemInInventoryOpt.get();
+        Item itemInInventory = item.getItem();
 
 
         // 2. Validate the target is in the room
-        if (targetInRoomOpt.isEmpty() || !player.getCurrentRoom().getItems().contains(targetInRoomOpt.get())) {
-            handleAmbiguityOrNoMatch(targetAlias);
+        if (!target.isUniqueIn(Resolution.Location.ROOM)) {
+            handleAmbiguityOrNoMatch(target, targetAlias);
             return;
         }
-        Item targetInRoom = targetInRoomOpt.get();
+        Item targetInRoom = target.getItem();
 
 
-        // 3. Implement specific interaction logic (The core mechanic)
-        // Check if the actual item names match "key" and "chest", regardless of the aliases used
-        if (itemInInventory.getName().equals("rusty key") && targetInRoom.getName().equals("chest")) {
-            if (targetInRoom.isLocked()) {
-                targetInRoom.setLocked(false);
-                // Move the hidden item (lantern) from the chest's inventory to the room's inventory
-                List<Item> chestContents = new ArrayList<>(targetInRoom.getInventory());
-                for(Item content : chestContents) {
-                    player.getCurrentRoom().addItem(content);
-                    targetInRoom.removeItem(content);
-                }
-                System.out.println("You use the " + itemInInventory.getName() + " on the " + targetInRoom.getName() + ". It clicks open! Inside you find a lantern.");
-            } else {
-                System.out.println("The chest is already unlocked.");
-            }
+        // 3. Look the interaction up by (verb, item, preposition, target), regardless of the aliases used
+        InteractionRules.Rule rule = rules.match("use", itemInInventory, preposition, targetInRoom,
+                world.isLocked(targetInRoom));
+        if (rule != null) {
+            applyRule(rule, itemInInventory, targetInRoom);
+            out.println(rule.formatMessage(itemInInventory, preposition, targetInRoom));
         } else {
-             System.out.println("You use the " + itemInInventory.getName() + " " + preposition + " the " + targetInRoom.getName() + ". It doesn't work.");
+             fail("You use the " + itemInInventory.getName() + " " + preposition + " the " + targetInRoom.getName() + ". It doesn't work.");
         }
     }
 
 
     
+    // Carries out a rule's effects, in the order InteractionRules lists them
+    private void applyRule(InteractionRules.Rule rule, Item item, Item target) {
+        if (rule.getEffects() == 0) {
+            return;
+        }
+        Room room = currentRoomForWrite(); // Keep the target in a session copy so its state sticks to it
+        if (rule.has(InteractionRules.UNLOCK)) {
+            world.setLocked(target, false);
+            scope.lockChanged(target);
+        }
+        if (rule.has(InteractionRules.LOCK)) {
+            world.setLocked(target, true);
+            scope.lockChanged(target);
+        }
+        if (rule.has(InteractionRules.REVEAL)) {
+            // Move the hidden items from the target's inventory to the room's inventory
+            for (Item content : new ArrayList<>(world.getContents(target))) {
+                room.addItem(content);
+                world.removeFromContainer(target, content);
+                scope.moved(content, Resolution.Location.ROOM);
+            }
+        }
+        if (rule.has(InteractionRules.CONSUME)) {
+            player.removeItem(item);
+            scope.removed(item);
+        }
+        if (rule.has(InteractionRules.REPLACE)) {
+            Item replacement = world.getTemplate().getItem(rule.getReplacement());
+            room.removeItem(target);
+            scope.removed(target);
+            room.addItem(replacement);
+            scope.moved(replacement, Resolution.Location.ROOM);
+        }
+        resolver.invalidate();
+    }
+
+    // Reached when "use" didn't fit the VERB OBJ PREP OBJ pattern
+    public void handleUseUsage(List<String> words) {
+        if (words.size() < 3) {
+            fail("Use what on what? Try 'use [item] on [target]'.");
+        } else {
+            fail("Please specify a proper preposition and items/objects.");
+        }
+    }
+
     // handleGo now expects a list of nouns, handles the first one
     public void handleGo(List<String> directions) {
         if (directions == null || directions.isEmpty()) {
-            System.out.println("Go where? (north, south, etc.)");
+            fail("Go where? (north, south, etc.)");
             return;
         }
-        String direction = directions.get(0); // Only use the first direction
+        go(Direction.fromWord(directions.get(0))); // Only use the first direction
+    }
 
-        String currentRoomId = getRoomIdByObject(player.getCurrentRoom());
-        String exitKey = currentRoomId + ":" + direction;
+    /**
+     * Handles "go to [room]": walks the shortest known route to a room the player has
+     * already been in, all in one turn. Rooms are named by the words of their key
+     * ("cave entrance" for cave_entrance).
+     */
+    public void handleGoTo(String preposition, List<String> roomWords) {
+        if (!preposition.equals("to")) {
+            handleGo(Collections.singletonList(preposition)); // "go in", "go on": same answer as before
+            return;
+        }
+        if (roomWords.isEmpty()) {
+            fail("Go to where?");
+            return;
+        }
 
-        if (exitsMap.containsKey(exitKey)) {
-            String destinationRoomId = exitsMap.get(exitKey);
-            Room destinationRoom = worldMap.get(destinationRoomId);
-            
-            if (destinationRoom != null) {
-                player.setCurrentRoom(destinationRoom); 
-                printLocationInfo();
-            } else {
-                System.out.println("Error: destination room not found in map data.");
+        List<Integer> matches = new ArrayList<>();
+        BitSet visited = player.getVisitedRooms();
+        for (int roomId = visited.nextSetBit(0); roomId >= 0; roomId = visited.nextSetBit(roomId + 1)) {
+            if (roomNameMatches(exitGraph.getRoomKey(roomId), roomWords)) {
+                matches.add(roomId);
+            }
+        }
+        if (matches.isEmpty()) {
+            fail("You don't know of any place called '" + String.join(" ", roomWords) + "'.");
+            return;
+        }
+        if (matches.size() > 1) {
+            List<String> names = new ArrayList<>();
+            for (int roomId : matches) {
+                names.add(roomName(roomId));
+            }
+            fail("Which place do you mean: " + String.join(", ", names) + "?");
+            return;
+        }
+
+        int from = player.getCurrentRoom().getId();
+        int to = matches.get(0);
+        if (from == to) {
+            out.println("You are already there.");
+            return;
+        }
+        // The cached route over the whole world, unless it leads through rooms the player hasn't seen
+        RoutePlanner routes = world.getTemplate().getRoutes();
+        int[] route = routes.route(from, to);
+        if (route != null && !allVisited(route)) {
+            route = routes.route(from, to, player::hasVisited);
+        }
+        if (route == null) {
+            fail("You don't know a way there from here.");
+            return;
+        }
+
+        StringBuilder steps = new StringBuilder("You go");
+        for (int i = 1; i < route.length; i++) {
+            steps.append(i > 1 ? ", " : " ").append(stepDirection(route[i - 1], route[i]).getWord());
+            player.setCurrentRoom(world.getRoom(route[i]));
+            world.getTemplate().roomEntered(route[i]);
+        }
+        enterRoom();
+        out.println(steps.append('.').toString());
+        printLocationInfo();
+    }
+
+    private boolean allVisited(int[] route) {
+        for (int roomId : route) {
+            if (!player.hasVisited(roomId)) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    private Direction stepDirection(int from, int to) {
+        for (int exit = exitGraph.firstExit(from); exit < exitGraph.endExit(from); exit++) {
+            if (exitGraph.getExitTarget(exit) == to) {
+                return exitGraph.getExitDirection(exit);
+            }
+        }
+        throw new IllegalStateException("Route step without an exit: " + from + " -> " + to);
+    }
+
+    // Every word must be one of the parts of the key (or the whole key)
+    private static boolean roomNameMatches(String key, List<String> words) {
+        List<String> parts = Arrays.asList(key.toLowerCase().split("[_\\- ]+"));
+        for (String word : words) {
+            if (!parts.contains(word) && !key.equalsIgnoreCase(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String roomName(int roomId) {
+        return exitGraph.getRoomKey(roomId).replace('_', ' ');
+    }
+
+    // Moves the player one step; also the target of the direction shortcuts ("n", "south", ...)
+    public void go(Direction direction) {
+        int destinationRoomId = direction == null
+                ? ExitGraph.NO_EXIT
+                : exitGraph.getExit(player.getCurrentRoom().getId(), direction);
+
+        if (destinationRoomId >= 0) {
+            player.setCurrentRoom(world.getRoom(destinationRoomId));
+            world.getTemplate().roomEntered(destinationRoomId);
+            enterRoom();
+            printLocationInfo();
+        } else if (destinationRoomId == ExitGraph.MISSING_ROOM) {
+            fail("Error: destination room not found in map data.");
         } else {
-            System.out.println("You can't go that way!");
+            fail("You can't go that way!");
         }
     }
 
@@ -296,10 +845,10 @@ public class Game {
                 itemsToProcess = Arrays.asList(itemToTake.getName());
                 autoItemName = itemToTake.getName();
             } else if (roomItems.size() > 1) {
-                System.out.println("Take what? There are multiple items here.");
+                fail("Take what? There are multiple items here.");
                 return;
             } else {
-                System.out.println("There is nothing here to take.");
+                fail("There is nothing here to take.");
                 return;
             }
         }
@@ -310,43 +859,73 @@ public class Game {
             // Search specifically within the current room's items using aliases
             // Use a copy of getItems() to avoid ConcurrentModificationException if we were using a fail-fast iterator
             List<Item> currentRoomItemsCopy = new ArrayList<>(player.getCurrentRoom().getItems());
+            int wordId = vocabulary.id(itemNameOrAlias.toLowerCase()); // -1 if no alias has this word
             
             for (Item item : currentRoomItemsCopy) {
                 // Check if the alias provided by the user matches any of the item's defined aliases
-                if (item.getAliases().stream().anyMatch(alias -> alias.equalsIgnoreCase(itemNameOrAlias))) {
+                if (wordId >= 0 && item.hasAlias(wordId)) {
                     foundItem = item;
                     break;
                 }
             }
 
+            List<String> itemWords = Collections.singletonList(itemNameOrAlias);
+            if (foundItem == null) {
+                // Not a whole alias of a room item: part of one, a misspelling (see ItemResolver),
+                // or an item somewhere else in reach
+                Resolution resolution = resolver.resolve(itemWords);
+                if (resolution.isUniqueIn(Resolution.Location.ROOM)) {
+                    foundItem = resolution.getItem();
+                } else if (resolution.isUniqueIn(Resolution.Location.CONTAINER)) {
+                    takeFromContainer(resolution.getItem());
+                } else if (!resolution.isUnique()) {
+                    handleAmbiguityOrNoMatch(resolution, itemWords);
+                }
+            }
+
             if (foundItem != null) {
                 // If found in the room, move it to the player's inventory
-                player.getCurrentRoom().removeItem(foundItem);
+                currentRoomForWrite().removeItem(foundItem);
                 player.addItem(foundItem);
+                scope.moved(foundItem, Resolution.Location.INVENTORY);
+                resolver.invalidate();
                 // Use the item's *primary name* for the message
-                System.out.println("You take the " + foundItem.getName() + ".");
-            } else {
-                // If the item is no longer found in the room's current list, it might have been taken in 
-                // a previous iteration. Only display an error if it's truly not in the entire game context (ambiguous or missing).
-                if (findItemByNameOrAlias(itemNameOrAlias).isEmpty()) {
-                    handleAmbiguityOrNoMatch(itemNameOrAlias);
-                }
+                out.println("You take the " + foundItem.getName() + ".");
+                lanternTaken(foundItem);
             }
         }
     }
     
+    // Takes an item out of an open container in reach (carried or in the room)
+    private void takeFromContainer(Item item) {
+        Item container = scope.getContainer(item);
+        if (!scope.isCarried(container)) {
+            currentRoomForWrite(); // The container's state must belong to the session's copy of the room
+        }
+        world.removeFromContainer(container, item);
+        player.addItem(item);
+        scope.moved(item, Resolution.Location.INVENTORY);
+        resolver.invalidate();
+        out.println("You take the " + item.getName() + " from the " + container.getName() + ".");
+        lanternTaken(item);
+    }
+
     // New handler to process multiple items for the "drop" verb
 	public void handleDropMulti(List<String> items) {
-	    if (items.isEmpty()) { System.out.println("Drop what?"); return; }
+	    if (items.isEmpty()) { fail("Drop what?"); return; }
 	   for (String itemNameOrAlias : items) {
-	        Optional<Item> itemOpt = findItemByNameOrAlias(itemNameOrAlias);
-	        if (itemOpt.isPresent() && player.getItemFromInventory(itemOpt.get().getName()) != null) {
-	            Item itemToDrop = itemOpt.get();
+	        List<String> itemWords = Collections.singletonList(itemNameOrAlias);
+	        Resolution resolution = resolver.resolve(itemWords);
+	        if (resolution.isUniqueIn(Resolution.Location.INVENTORY)) {
+	            Item itemToDrop = resolution.getItem();
 	            player.removeItem(itemToDrop);
-	            player.getCurrentRoom().addItem(itemToDrop);
-	            System.out.println("You drop the " + itemToDrop.getName() + ".");
+	            currentRoomForWrite().addItem(itemToDrop);
+	            scope.moved(itemToDrop, Resolution.Location.ROOM);
+	            resolver.invalidate();
+	            out.println("You drop the " + itemToDrop.getName() + ".");
+	            lanternDropped(itemToDrop);
 	        } else {
-	            handleAmbiguityOrNoMatch(itemNameOrAlias); // Use the helper
+	            handleAmbiguityOrNoMatch(resolution, itemWords); // Use the helper
 	        }
 	   }
 	}
@@ -360,20 +939,19 @@ public class Game {
             return;
         }
 
-        String targetName = String.join(" ", objects);
-        Optional<Item> itemOpt = findItemByNameOrAlias(targetName);
+        Resolution resolution = resolver.resolve(objects);
 
-        if (itemOpt.isPresent()) {
-            Item item = itemOpt.get();
-            System.out.println(item.getDescription());
-            if (!item.getInventory().isEmpty() && !item.isLocked()) {
-                 System.out.print("Inside you see: ");
-                 item.getInventory().forEach(i -> System.out.print(i.getName() + " "));
-                 System.out.println();
+        if (resolution.isUnique()) {
+            Item item = resolution.getItem();
+            out.println(item.getDescription());
+            if (!world.getContents(item).isEmpty() && !world.isLocked(item)) {
+                 out.print("Inside you see: ");
+                 world.getContents(item).forEach(i -> out.print(i.getName() + " "));
+                 out.println();
             }
         } else {
             // Handle ambiguity or no match
-            handleAmbiguityOrNoMatch(targetName);
+            handleAmbiguityOrNoMatch(resolution, objects);
         }
     }
     
@@ -384,42 +962,40 @@ public class Game {
 
     // handleInventory is still simple
     public void handleInventory(List<String> dummyHolder) {
-        System.out.println(player.getInventoryDescription());
+        out.println(player.getInventoryDescription());
     }
     
-    // Helper method to provide better feedback on ambiguous or unknown items
-    private void handleAmbiguityOrNoMatch(String input) {
-        // Re-run the search to determine if it was a total miss or an ambiguous match
-        List<String> cleanInputWords = Arrays.stream(input.toLowerCase().split(" "))
-                .filter(word -> !NOISE_WORDS.contains(word) && !word.isEmpty())
-                .collect(Collectors.toList());
-        
-        List<Item> allAvailableItems = new ArrayList<>();
-        allAvailableItems.addAll(player.getItemInventoryList());
-        allAvailableItems.addAll(player.getCurrentRoom().getItems());
-        
-        List<Item> matches = allAvailableItems.stream().filter(item -> {
-             return cleanInputWords.stream().allMatch(word -> item.getAliases().stream().anyMatch(alias -> alias.contains(word)));
-        }).collect(Collectors.toList());
-
-        if (matches.size() > 1) {
-            System.out.print("Which one did you mean? ");
-            matches.forEach(item -> System.out.print(item.getName() + " or "));
-            System.out.println("?");
+    // Helper method to provide better feedback on ambiguous or unknown items,
+    // using the candidates the failed lookup already found
+    private void handleAmbiguityOrNoMatch(Resolution resolution, List<String> cleanInputWords) {
+        commandFailed = true;
+        if (resolution.isAmbiguous()) {
+            out.print("Which one did you mean? ");
+            resolution.getCandidates().forEach(item -> out.print(item.getName() + " or "));
+            out.println("?");
         } else {
-            System.out.println("You don't see any \"" + input + "\" here or in your inventory.");
+            out.println("You don't see any \"" + String.join(" ", cleanInputWords) + "\" here or in your inventory.");
+        }
+    }
+
+    // Not listed in help: prints the server-wide command metrics, for operators
+    public void handleStats(List<String> objects) {
+        if (!operator) {
+            fail("I don't know how to stats."); // Server-wide numbers aren't for players
+            return;
         }
+        out.print(metrics.dump());
     }
 
     /**
      * Handles the 'help' command, listing available actions from the table.
      */
     public void handleHelp(List<String> objects) {
-        System.out.println("\nYou are playing a text adventure game.");
-        System.out.println("Available commands:");
+        out.println("\nYou are playing a text adventure game.");
+        out.println("Available commands:");
         // Iterate over the primary commands map to list available options
         primaryCommands.forEach((command, description) -> {
-            System.out.printf("- %s: %s%n", command, description);
+            out.println(String.format("- %s: %s", command, description));
         });
     }
 
@@ -0,0 +1,25 @@
+package TextAdventureParser;
+
+/**
+ * Where a game session reads commands from and writes its output to.
+ * Each Game owns one, so handlers never touch System.in/System.out directly.
+ */
+public interface GameIO {
+    /**
+     * Reads the next command line, flushing any pending output first.
+     * @return The line, or null when the player has disconnected / input has ended.
+     */
+    String readLine();
+
+    void print(String text);
+
+    void println(String text);
+
+    default void println() {
+        println("");
+    }
+
+    void flush();
+
+    void close();
+}
@@ -0,0 +1,129 @@
+package TextAdventureParser;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+
+/**
+ * Hosts many independent game sessions in one JVM.
+ * Listens on a local TCP port and runs each connected player's Game on its own
+ * virtual thread, with the connection as the session's GameIO. Sessions share
+ * nothing, so no locking is needed between them; one WorldScheduler ticks for all
+ * of them and runs each session's timed events in that session.
+ * <p>
+ * In shared mode every player plays in one SharedWorld instead, seeing what the
+ * others take and drop; the world's lock stripes keep their moves apart.
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 4000;
+
+    private int port;
+    private WorldTemplate template; // Shared by every session
+    private WorldScheduler scheduler; // Timed events of every session
+    private SharedWorld sharedWorld; // The world every player is in, or null for a world per session
+    private AtomicInteger activeSessions;
+
+    public static final long STATS_INTERVAL_MILLIS = 60_000;
+
+    // Arguments: [port] [world image|-] [max resident regions] [parse cache lines] [tick millis] [private|shared]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxRegions = args.length > 2 ? Integer.parseInt(args[2]) : RegionCache.DEFAULT_MAX_REGIONS;
+        WorldTemplate template = args.length > 1 && !args[1].equals("-")
+                ? WorldTemplate.fromImage(WorldImage.open(Path.of(args[1])), RegionCache.DEFAULT_REGION_SIZE, maxRegions)
+                : WorldTemplate.getDefault();
+        if (args.length > 3) {
+            template.setParseCache(new ParseCache(Integer.parseInt(args[3]), ParseCache.Eviction.LRU));
+        }
+        WorldScheduler scheduler = new WorldScheduler(args.length > 4 ? Long.parseLong(args[4]) : WorldScheduler.DEFAULT_TICK_MILLIS);
+        WorldValidator.check(template);
+        String world = args.length > 1 ? args[1] : "default";
+        try {
+            template.getMetrics().registerMBeans(world);
+            scheduler.registerMBean(world);
+        } catch (JMException e) {
+            System.err.println("Could not register the metrics with JMX: " + e.getMessage());
+        }
+        Thread.ofVirtual().name("route-landmarks").start(template.getRoutes()::prepare);
+        GameServer server = new GameServer(port, template, scheduler);
+        if (args.length > 5 && args[5].equals("shared")) {
+            server.setSharedWorld(new SharedWorld(template));
+        }
+        server.serve();
+    }
+
+    public GameServer(int port, WorldTemplate template) {
+        this(port, template, new WorldScheduler());
+    }
+
+    public GameServer(int port, WorldTemplate template, WorldScheduler scheduler) {
+        this.port = port;
+        this.template = template;
+        this.scheduler = scheduler;
+        this.activeSessions = new AtomicInteger();
+    }
+
+    /**
+     * Accepts connections until the process is stopped. Blocking is cheap on
+     * virtual threads, so each session simply blocks on its own socket.
+     */
+    public void serve() throws IOException {
+        try (ServerSocket listener = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+             ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("Adventure server listening on " + listener.getLocalSocketAddress());
+            Thread.ofVirtual().name("cache-stats").start(this::reportCacheStats);
+            scheduler.start();
+            while (true) {
+                Socket client = listener.accept();
+                sessions.submit(() -> runSession(client));
+            }
+        }
+    }
+
+    // Puts every session that connects from now on into one world
+    public void setSharedWorld(SharedWorld sharedWorld) {
+        this.sharedWorld = sharedWorld;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    // Logs the cache counters now and then, to help size the caches
+    private void reportCacheStats() {
+        try {
+            while (true) {
+                Thread.sleep(STATS_INTERVAL_MILLIS);
+                String regions = template.getRegionCache() != null ? ", " + template.getRegionCache() : "";
+                System.out.println("Sessions " + activeSessions.get() + ", " + template.getParseCache() + regions
+                        + ", " + template.getMetrics() + ", " + scheduler
+                        + (sharedWorld != null ? ", " + sharedWorld : ""));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSession(Socket client) {
+        activeSessions.incrementAndGet();
+        try (client) {
+            client.setTcpNoDelay(true); // One write per turn, so don't hold it back
+            GameIO io = new StreamIO(client.getInputStream(), client.getOutputStream());
+            Game game = sharedWorld != null ? new Game(sharedWorld, io) : new Game(template, io);
+            game.setScheduler(scheduler);
+            game.setOperator(false); // Operators read the stats from the log or JMX
+            game.play();
+        } catch (IOException e) {
+            System.err.println("Session ended with an error: " + e.getMessage());
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+}
@@ -1,24 +1,34 @@
 package TextAdventureParser;
 
 
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
 
 public class Initialize {
 
+    // Item-on-item interactions, written like world file rules (see InteractionRules)
+    public static final String[] RULES = {
+        "use rusty_key * chest | locked | unlock, reveal | You use the {item} on the {target}. It clicks open! Inside you find a lantern.",
+        "use rusty_key * chest | unlocked | | The chest is already unlocked.",
+    };
+
+    // The item that lights when taken in a session with timed events, and how many ticks it burns
+    public static final String LANTERN = "lantern";
+    public static final long LANTERN_BURN_TICKS = 1800; // Three minutes at the default tick
+
+    private Initialize() {
+    }
+
     /**
-     * Populates the command map with valid commands and their actions.
-     * @param commands The map to populate.
-     * @param game The Game instance to link command actions to.
+     * Declares the game's verbs, their synonyms and their argument patterns.
+     * @param grammar The grammar to add the verbs to.
+     * @param primaryCommands The map of primary commands and their help text.
      */
 
-        // We link the commands back to the methods in the Game class instance
-    public static void initializeCommands(Map<String, Consumer<List<String>>> commands, 
-                   Map<String, String> primaryCommands, // New map parameter
-                   Game game) {
+        // We link the commands to the handler methods of whichever Game runs them,
+        // so one grammar can be shared by every session
+    public static void initializeCommands(CommandGrammar grammar, 
+                   Map<String, String> primaryCommands) {
 /*
         commands.put("go", game::handleGo);
         commands.put("take", game::handleTakeMulti); // New multi-noun handler
@@ -46,7 +56,7 @@ public class Initialize {
         // You can add more like "up", "down", etc.
  */
         // Define primary commands and their descriptions
-        primaryCommands.put("go", "Move in a direction (e.g., 'go north', 'n')");
+        primaryCommands.put("go", "Move in a direction (e.g., 'go north', 'n'), or to a room you have been in ('go to cave entrance')");
         primaryCommands.put("take", "Pick up an item (e.g., 'take key', 'get all')");
         primaryCommands.put("drop", "Put down an item from inventory");
         primaryCommands.put("examine", "Look closely at something (e.g., 'examine chest', 'x key')");
@@ -57,31 +67,28 @@ public class Initialize {
         primaryCommands.put("quit", "Exit the game (or 'exit')");
 
 
-        // Link all aliases back to the primary command handlers in the Game instance
-        commands.put("go", game::handleGo);
-        commands.put("take", game::handleTakeMulti);
-        commands.put("get", game::handleTakeMulti);
-        commands.put("drop", game::handleDropMulti);
-        commands.put("look", game::handleLook);
-        commands.put("examine", game::handleExamine);
-        commands.put("x", game::handleExamine);
-        commands.put("inventory", game::handleInventory);
-        commands.put("i", game::handleInventory);
-        commands.put("use", game::handleUse);
-        commands.put("help", game::handleHelp);
-        commands.put("?", game::handleHelp);
-        commands.put("quit", null); // Handled explicitly in the game loop check
-        commands.put("exit", null); // Handled explicitly in the game loop check
+        // Link all verbs and their synonyms to the handler methods in the Game class.
+        // Patterns are tried in order; arguments are bound once by the grammar matcher
+        grammar.verb("go").changesState()
+                .pattern("VERB PREP WORDS", (game, match) -> game.handleGoTo(match.preposition(), match.words()))
+                .pattern("VERB WORDS", (game, match) -> game.handleGo(match.words()));
+        grammar.verb("take", "get").changesState().pattern("VERB WORDS", (game, match) -> game.handleTakeMulti(match.words()));
+        grammar.verb("drop").changesState().pattern("VERB WORDS", (game, match) -> game.handleDropMulti(match.words()));
+        grammar.verb("look").pattern("VERB WORDS", (game, match) -> game.handleLook(match.words()));
+        grammar.verb("examine", "x").pattern("VERB WORDS", (game, match) -> game.handleExamine(match.words()));
+        grammar.verb("inventory", "i").pattern("VERB WORDS", (game, match) -> game.handleInventory(match.words()));
+        grammar.verb("use").changesState()
+                .pattern("VERB OBJ PREP OBJ", (game, match) -> game.handleUse(match.object(0), match.preposition(), match.object(1)))
+                .pattern("VERB WORDS", (game, match) -> game.handleUseUsage(match.words()));
+        grammar.verb("help", "?").pattern("VERB WORDS", (game, match) -> game.handleHelp(match.words()));
+        grammar.verb("stats").pattern("VERB WORDS", (game, match) -> game.handleStats(match.words()));
+        grammar.verb("quit", "exit"); // Handled explicitly in the game loop check
 
-        // Direction aliases (These are technically single-word commands that use the 'go' handler)
-        commands.put("north", nouns -> game.handleGo(Arrays.asList("north")));
-        commands.put("n", nouns -> game.handleGo(Arrays.asList("north")));
-        commands.put("south", nouns -> game.handleGo(Arrays.asList("south")));
-        commands.put("s", nouns -> game.handleGo(Arrays.asList("south")));
-        commands.put("east", nouns -> game.handleGo(Arrays.asList("east")));
-        commands.put("e", nouns -> game.handleGo(Arrays.asList("east")));
-        commands.put("west", nouns -> game.handleGo(Arrays.asList("west")));
-        commands.put("w", nouns -> game.handleGo(Arrays.asList("west")));
+        // Direction shortcuts (single-word commands that go straight to the 'go' logic)
+        grammar.verb("north", "n").changesState().pattern("VERB WORDS", (game, match) -> game.go(Direction.NORTH));
+        grammar.verb("south", "s").changesState().pattern("VERB WORDS", (game, match) -> game.go(Direction.SOUTH));
+        grammar.verb("east", "e").changesState().pattern("VERB WORDS", (game, match) -> game.go(Direction.EAST));
+        grammar.verb("west", "w").changesState().pattern("VERB WORDS", (game, match) -> game.go(Direction.WEST));
     }
 
 
@@ -92,6 +99,14 @@ public class Initialize {
      * @return The ID of the starting room.
      */
     public static String initializeRoomsAndItems(Map<String, Room> worldMap, Map<String, String> exitsMap) {
+        return initializeRoomsAndItems(worldMap, exitsMap, new HashMap<>());
+    }
+
+    /**
+     * Same, also filling itemMap with every item by its key (as used in RULES).
+     */
+    public static String initializeRoomsAndItems(Map<String, Room> worldMap, Map<String, String> exitsMap,
+                                                 Map<String, Item> itemMap) {
         // Define all rooms and add them to the world map
         Room outside = new Room("You are standing outside a dark cave entrance.");
         Room caveEntrance = new Room("You are in a dimly lit entrance hall. The air is cold.");
@@ -127,6 +142,29 @@ public class Initialize {
         chest.addItem(lantern);
         chest.setLocked(true);
 
+        itemMap.put("rusty_key", rustyKey);
+        itemMap.put("golden_key", goldenKey);
+        itemMap.put("sword", sword);
+        itemMap.put("chest", chest);
+        itemMap.put("lantern", lantern);
+        itemMap.put("shield", shield);
+
         return "outside"; // Return the starting room ID
     }
+
+    /**
+     * Adds RULES to the rule table. Call once the items have their ids.
+     * @param itemMap The items by key, as filled by initializeRoomsAndItems.
+     */
+    public static void initializeRules(InteractionRules rules, Map<String, Item> itemMap) {
+        for (String rule : RULES) {
+            rules.add(InteractionRules.parse(rule), key -> {
+                Item item = itemMap.get(key);
+                if (item == null) {
+                    throw new IllegalArgumentException("Rule refers to unknown item " + key + ": " + rule);
+                }
+                return item.getId();
+            });
+        }
+    }
 }
@@ -0,0 +1,347 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * What happens when an item is used on another ("use key on chest"), as data.
+ * Rules are written one per line, in world files and in Initialize:
+ * <pre>
+ * rule &lt;verb&gt; &lt;item&gt; &lt;preposition | *&gt; &lt;target&gt; | &lt;conditions&gt; | &lt;effects&gt; | &lt;message&gt;
+ * rule use rusty_key * chest | locked | unlock, reveal | You use the rusty key on the chest. It clicks open!
+ * </pre>
+ * Conditions (on the target): locked, unlocked, or nothing. Effects, applied in this
+ * order: unlock, lock, reveal (the target's contents drop into the room), consume
+ * (the item is used up), replace &lt;item&gt; (the target turns into another item, usually
+ * one defined "nowhere"). The message may use {item}, {target} and {prep}.
+ * <p>
+ * Rules are indexed by (verb, item id, target id, preposition) in an open-addressing
+ * table, so finding the rules for a command is one hash probe however many there are.
+ * A "*" preposition is stored under every preposition. Several rules may share a key;
+ * the first whose conditions hold wins. Immutable once the template is built.
+ */
+public class InteractionRules {
+    // Conditions
+    public static final int WHEN_LOCKED = 1;
+    public static final int WHEN_UNLOCKED = 2;
+
+    // Effects
+    public static final int UNLOCK = 1;
+    public static final int LOCK = 2;
+    public static final int REVEAL = 4;
+    public static final int CONSUME = 8;
+    public static final int REPLACE = 16;
+
+    public static final int NO_ITEM = -1;
+
+    /**
+     * One rule as written, with item keys (or ids, for Initialize) still to be resolved.
+     */
+    public static class RuleDef {
+        public final String verb;
+        public final String item;
+        public final String preposition; // null for any
+        public final String target;
+        public final int conditions;
+        public final int effects;
+        public final String replacement; // Item key for REPLACE, else null
+        public final String message;
+
+        public RuleDef(String verb, String item, String preposition, String target,
+                       int conditions, int effects, String replacement, String message) {
+            this.verb = verb;
+            this.item = item;
+            this.preposition = preposition;
+            this.target = target;
+            this.conditions = conditions;
+            this.effects = effects;
+            this.replacement = replacement;
+            this.message = message;
+        }
+    }
+
+    /**
+     * A rule with its items resolved to template ids.
+     */
+    public static class Rule {
+        private final String verb;
+        private final int item;
+        private final String preposition;
+        private final int target;
+        private final int conditions;
+        private final int effects;
+        private final int replacement;
+        private final String message;
+
+        Rule(String verb, int item, String preposition, int target, int conditions, int effects,
+             int replacement, String message) {
+            this.verb = verb;
+            this.item = item;
+            this.preposition = preposition;
+            this.target = target;
+            this.conditions = conditions;
+            this.effects = effects;
+            this.replacement = replacement;
+            this.message = message;
+        }
+
+        public boolean applies(boolean targetLocked) {
+            return ((conditions & WHEN_LOCKED) == 0 || targetLocked)
+                    && ((conditions & WHEN_UNLOCKED) == 0 || !targetLocked);
+        }
+
+        public boolean has(int effect) {
+            return (effects & effect) != 0;
+        }
+
+        public String getVerb() {
+            return verb;
+        }
+
+        public int getItem() {
+            return item;
+        }
+
+        // null for any preposition
+        public String getPreposition() {
+            return preposition;
+        }
+
+        public int getTarget() {
+            return target;
+        }
+
+        public int getConditions() {
+            return conditions;
+        }
+
+        public int getEffects() {
+            return effects;
+        }
+
+        public int getReplacement() {
+            return replacement;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String formatMessage(Item item, String preposition, Item target) {
+            return message.replace("{item}", item.getName())
+                          .replace("{prep}", preposition)
+                          .replace("{target}", target.getName());
+        }
+    }
+
+    private final Vocabulary vocabulary;
+    private final List<Rule> rules; // As added, e.g. for writing them into an image
+    // Open addressing, linear probing, size is a power of two; null is a free slot
+    private int[] keyVerbs;
+    private int[] keyItems;
+    private int[] keyTargets;
+    private int[] keyPrepositions;
+    private Rule[][] slots; // The rules under each key, in the order they were added
+    private int keys;
+
+    public InteractionRules(Vocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+        this.rules = new ArrayList<>();
+        allocate(16);
+    }
+
+    /**
+     * Adds a rule, resolving its item keys.
+     * @throws IllegalArgumentException If an item key is unknown.
+     */
+    public void add(RuleDef def, ToIntFunction<String> itemIds) {
+        int replacement = def.replacement != null ? itemIds.applyAsInt(def.replacement) : NO_ITEM;
+        add(new Rule(def.verb, itemIds.applyAsInt(def.item), def.preposition, itemIds.applyAsInt(def.target),
+                def.conditions, def.effects, replacement, def.message));
+    }
+
+    public void add(Rule rule) {
+        rules.add(rule);
+        int verb = vocabulary.intern(rule.verb);
+        if (rule.preposition != null) {
+            put(verb, rule.item, vocabulary.intern(rule.preposition), rule.target, rule);
+        } else {
+            for (String preposition : CommandTokenizer.PREPOSITIONS) {
+                put(verb, rule.item, vocabulary.intern(preposition), rule.target, rule);
+            }
+        }
+    }
+
+    /**
+     * The rules for a command, in the order they were added.
+     * @param verb The verb's Vocabulary id.
+     * @param preposition The preposition's Vocabulary id.
+     * @return The rules, or null if there are none.
+     */
+    public Rule[] find(int verb, int item, int preposition, int target) {
+        int mask = slots.length - 1;
+        for (int slot = hash(verb, item, preposition, target) & mask; slots[slot] != null; slot = (slot + 1) & mask) {
+            if (keyVerbs[slot] == verb && keyItems[slot] == item
+                    && keyPrepositions[slot] == preposition && keyTargets[slot] == target) {
+                return slots[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The first rule for a command whose conditions hold, or null.
+     */
+    public Rule match(String verb, Item item, String preposition, Item target, boolean targetLocked) {
+        int verbId = vocabulary.id(verb);
+        int prepositionId = vocabulary.id(preposition);
+        if (verbId < 0 || prepositionId < 0) {
+            return null;
+        }
+        Rule[] candidates = find(verbId, item.getId(), prepositionId, target.getId());
+        if (candidates != null) {
+            for (Rule rule : candidates) {
+                if (rule.applies(targetLocked)) {
+                    return rule;
+                }
+            }
+        }
+        return null;
+    }
+
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    // Appends the rule to the ones under its key
+    private void put(int verb, int item, int preposition, int target, Rule rule) {
+        if ((keys + 1) * 2 > slots.length) {
+            grow();
+        }
+        int mask = slots.length - 1;
+        int slot = hash(verb, item, preposition, target) & mask;
+        while (slots[slot] != null) {
+            if (keyVerbs[slot] == verb && keyItems[slot] == item
+                    && keyPrepositions[slot] == preposition && keyTargets[slot] == target) {
+                Rule[] existing = slots[slot];
+                slots[slot] = Arrays.copyOf(existing, existing.length + 1);
+                slots[slot][existing.length] = rule;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keyVerbs[slot] = verb;
+        keyItems[slot] = item;
+        keyPrepositions[slot] = preposition;
+        keyTargets[slot] = target;
+        slots[slot] = new Rule[] { rule };
+        keys++;
+    }
+
+    private void grow() {
+        int[] verbs = keyVerbs;
+        int[] items = keyItems;
+        int[] prepositions = keyPrepositions;
+        int[] targets = keyTargets;
+        Rule[][] old = slots;
+        allocate(old.length * 2);
+        int mask = slots.length - 1;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] != null) {
+                int slot = hash(verbs[i], items[i], prepositions[i], targets[i]) & mask;
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keyVerbs[slot] = verbs[i];
+                keyItems[slot] = items[i];
+                keyPrepositions[slot] = prepositions[i];
+                keyTargets[slot] = targets[i];
+                slots[slot] = old[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keyVerbs = new int[capacity];
+        keyItems = new int[capacity];
+        keyPrepositions = new int[capacity];
+        keyTargets = new int[capacity];
+        slots = new Rule[capacity][];
+    }
+
+    private static int hash(int verb, int item, int preposition, int target) {
+        int hash = verb;
+        hash = hash * 0x9E3779B9 + item;
+        hash = hash * 0x9E3779B9 + preposition;
+        hash = hash * 0x9E3779B9 + target;
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Parses the part of a rule line after "rule".
+     * @throws IllegalArgumentException With the expected form, if the line doesn't fit it.
+     */
+    public static RuleDef parse(String line) {
+        String usage = "rule <verb> <item> <preposition|*> <target> | <conditions> | <effects> | <message>";
+        String[] fields = line.split("\\|", -1);
+        String[] head = fields[0].trim().split("\\s+");
+        if (head.length != 4 || fields.length != 4 || fields[3].isBlank()) {
+            throw new IllegalArgumentException("expected " + usage);
+        }
+        String preposition = head[2].equals("*") ? null : head[2];
+        if (preposition != null && !CommandTokenizer.isPreposition(preposition)) {
+            throw new IllegalArgumentException("expected a preposition (" + String.join(", ", CommandTokenizer.PREPOSITIONS) + ") or *");
+        }
+
+        int conditions = 0;
+        for (String condition : words(fields[1])) {
+            switch (condition) {
+                case "locked": conditions |= WHEN_LOCKED; break;
+                case "unlocked": conditions |= WHEN_UNLOCKED; break;
+                default: throw new IllegalArgumentException("unknown condition '" + condition + "' (locked, unlocked)");
+            }
+        }
+
+        int effects = 0;
+        String replacement = null;
+        for (String effect : words(fields[2])) {
+            String[] parts = effect.split("\\s+");
+            switch (parts[0]) {
+                case "unlock": effects |= UNLOCK; break;
+                case "lock": effects |= LOCK; break;
+                case "reveal": effects |= REVEAL; break;
+                case "consume": effects |= CONSUME; break;
+                case "replace":
+                    if (parts.length != 2) {
+                        throw new IllegalArgumentException("expected replace <item>");
+                    }
+                    effects |= REPLACE;
+                    replacement = parts[1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown effect '" + parts[0] + "' (unlock, lock, reveal, consume, replace <item>)");
+            }
+        }
+        return new RuleDef(head[0].toLowerCase(), head[1], preposition, head[3],
+                conditions, effects, replacement, fields[3].trim());
+    }
+
+    // The comma-separated entries of a field, trimmed, without empty ones
+    private static List<String> words(String field) {
+        List<String> result = new ArrayList<>();
+        for (String word : field.split(",")) {
+            if (!word.isBlank()) {
+                result.add(word.trim());
+            }
+        }
+        return result;
+    }
+}
@@ -6,11 +6,14 @@ import java.util.List;
 import java.util.Collections;
 
 public class Item {
+    private int id = -1; // Numeric id, assigned when the world template is built or loaded
     private String name;
     private String description;
     private List<Item> inventory; // A list to hold items inside this item
     private boolean locked; // A flag to indicate if this item is a locked container
     private List<String> aliases; // New list for synonyms/adjectives
+    private boolean frozen; // Shared template item: per-session changes go through WorldState
+    private volatile CompiledAliases compiled; // Built on first use, see compiledAliases()
     
     public Item(String name, String description, String... aliases) {
         this.name = name;
@@ -22,6 +25,14 @@ public class Item {
         this.aliases.add(name.toLowerCase()); // Add the primary name as an alias
   }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
@@ -32,6 +43,7 @@ public class Item {
 
     // New methods for locking/unlocking
     public void setLocked(boolean locked) {
+        checkNotFrozen();
         this.locked = locked;
     }
     public boolean isLocked() {
@@ -40,11 +52,42 @@ public class Item {
     
     public List<String> getAliases() { return aliases; } // New getter
 
+    // True if some alias word contains the word with this vocabulary id (alias.contains(word))
+    public boolean hasAliasKey(int wordId) {
+        return Arrays.binarySearch(compiledAliases().keys, wordId) >= 0;
+    }
+
+    // True if some whole alias equals the word with this vocabulary id, ignoring case
+    public boolean hasAlias(int wordId) {
+        return Arrays.binarySearch(compiledAliases().ids, wordId) >= 0;
+    }
+
+    // True if a word of some alias contains the word, the test an AliasIndex lookup makes,
+    // but on the strings: nothing is interned, for one-off checks over many items
+    public boolean aliasContains(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (String alias : aliases) {
+            if (alias.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The AliasIndex keys for this item
+    int[] getAliasKeys() {
+        return compiledAliases().keys;
+    }
+
     // New methods for container functionality
     public void addItem(Item item) {
+        checkNotFrozen();
         inventory.add(item);
     }
     public void removeItem(Item item) {
+        checkNotFrozen();
         inventory.remove(item);
     }
     public List<Item> getInventory() {
@@ -52,6 +95,82 @@ public class Item {
     }
 
     
+    // Marks the item and its contents as shared and read-only
+    public void freeze() {
+        frozen = true;
+        for (Item item : inventory) {
+            item.freeze();
+        }
+    }
+
+    // Alias words as Vocabulary ids, so matching needs no String comparisons
+    private static final class CompiledAliases {
+        final int[] keys; // Every substring of every alias word, sorted
+        final int[] ids;  // The whole aliases, lower-cased, sorted
+
+        CompiledAliases(int[] keys, int[] ids) {
+            this.keys = keys;
+            this.ids = ids;
+        }
+    }
+
+    // Compiled when the item is first indexed rather than when it is created, so loading
+    // items that are never matched (e.g. while validating a whole image) stays cheap.
+    // Racing threads compile the same arrays, so whichever write wins is fine.
+    private CompiledAliases compiledAliases() {
+        CompiledAliases result = compiled;
+        if (result == null) {
+            result = compileAliases(Vocabulary.global());
+            compiled = result;
+        }
+        return result;
+    }
+
+    private CompiledAliases compileAliases(Vocabulary vocabulary) {
+        int[] keys = new int[16];
+        int count = 0;
+        int[] ids = new int[aliases.size()];
+        for (int i = 0; i < aliases.size(); i++) {
+            String alias = aliases.get(i);
+            ids[i] = vocabulary.intern(alias.toLowerCase());
+            // Every substring of every space-separated word: input words never contain
+            // spaces, so these are exactly the words an alias.contains(word) check accepts
+            int wordStart = 0;
+            for (int end = 0; end <= alias.length(); end++) {
+                if (end < alias.length() && alias.charAt(end) != ' ') {
+                    continue;
+                }
+                for (int start = wordStart; start < end; start++) {
+                    for (int stop = start + 1; stop <= end; stop++) {
+                        if (count == keys.length) {
+                            keys = Arrays.copyOf(keys, count * 2);
+                        }
+                        keys[count++] = vocabulary.intern(alias, start, stop);
+                    }
+                }
+                wordStart = end + 1;
+            }
+        }
+        return new CompiledAliases(sortedUnique(keys, count), sortedUnique(ids, ids.length));
+    }
+
+    private static int[] sortedUnique(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Template item is shared; change its state through WorldState");
+        }
+    }
+
     @Override
     public String toString() {
         // This is useful for printing the item directly
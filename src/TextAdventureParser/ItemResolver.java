@@ -0,0 +1,144 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches noun phrases against the player's inventory, current room and the
+ * open containers in reach (see Scope). A phrase that matches nothing is tried
+ * again with one of its words respelled (see SpellingIndex), keeping the nearest
+ * respellings that match something in reach.
+ * Results are memoized for the rest of the turn, so a phrase that is checked,
+ * validated and then reported on is only searched once. Anything that moves an
+ * item must call invalidate(), since the memo would then describe the old world.
+ */
+public class ItemResolver {
+    private Player player;
+    private Scope scope; // Items inside open containers; null to leave them out
+    private Map<List<String>, Resolution> memo; // Phrase -> result, for the current turn only
+    private CommandMetrics metrics; // Counts outcomes; null to not count them
+    private SpellingIndex spelling; // Alias words for correcting typos; null for exact matches only
+
+    public ItemResolver(Player player) {
+        this(player, null, null, null);
+    }
+
+    public ItemResolver(Player player, Scope scope, CommandMetrics metrics, SpellingIndex spelling) {
+        this.player = player;
+        this.scope = scope;
+        this.memo = new HashMap<>();
+        this.metrics = metrics;
+        this.spelling = spelling;
+    }
+
+    /**
+     * @param words The cleaned, lower-case words of one noun phrase (see CommandTokenizer).
+     * @return Every item in reach whose aliases contain all the words: inventory, then room, then containers.
+     */
+    public Resolution resolve(List<String> words) {
+        Resolution cached = memo.get(words);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Item> candidates = new ArrayList<>();
+        int inventoryMatches;
+        int roomMatches;
+        if (words.isEmpty()) {
+            // No words means every item in reach "matches", but only as an ambiguity
+            candidates.addAll(player.getItemInventoryList());
+            inventoryMatches = candidates.size();
+            candidates.addAll(player.getCurrentRoom().getItems());
+            if (candidates.size() == 1) {
+                candidates.clear();
+                inventoryMatches = 0;
+            }
+            roomMatches = candidates.size() - inventoryMatches;
+        } else {
+            int[] counts = collectMatches(AliasIndex.wordIds(words), candidates);
+            if (candidates.isEmpty() && spelling != null) {
+                counts = collectCorrected(words, candidates);
+            }
+            inventoryMatches = counts[0];
+            roomMatches = counts[1];
+        }
+
+        Resolution resolution = new Resolution(candidates, inventoryMatches, roomMatches);
+        if (metrics != null) {
+            metrics.resolved(resolution);
+        }
+        memo.put(List.copyOf(words), resolution); // The words are a view on the tokenizer's buffer
+        return resolution;
+    }
+
+    /**
+     * Searches inventory, room and containers in that order.
+     * @return How many matches came from the inventory and from the room.
+     */
+    private int[] collectMatches(int[] wordIds, List<Item> candidates) {
+        int start = candidates.size();
+        player.getInventoryIndex().collectMatches(wordIds, candidates);
+        int inventoryMatches = candidates.size() - start;
+        player.getCurrentRoom().getAliasIndex().collectMatches(wordIds, candidates);
+        int roomMatches = candidates.size() - start - inventoryMatches;
+        if (scope != null) {
+            scope.getContainedIndex().collectMatches(wordIds, candidates);
+        }
+        return new int[] { inventoryMatches, roomMatches };
+    }
+
+    // Only runs once the exact phrase matched nothing. Tries each word's respellings,
+    // nearest first, and stops at the first word and distance where any of them match.
+    // Respellings at the same distance all count, so "cot" can come back as coat or cat.
+    private int[] collectCorrected(List<String> words, List<Item> candidates) {
+        int[] wordIds = AliasIndex.wordIds(words);
+        for (int w = 0; w < words.size(); w++) {
+            List<String> corrections = spelling.corrections(words.get(w));
+            int distance = -1;
+            List<Item> inventory = new ArrayList<>();
+            List<Item> rest = new ArrayList<>(); // Room and containers, in that order
+            int roomMatches = 0;
+            for (String correction : corrections) {
+                int d = SpellingIndex.distance(words.get(w), correction, spelling.getMaxDistance());
+                if (distance >= 0 && d > distance) {
+                    break; // Something matched at a nearer distance
+                }
+                int[] corrected = Arrays.copyOf(wordIds, wordIds.length);
+                corrected[w] = Vocabulary.global().id(correction);
+                List<Item> found = new ArrayList<>();
+                int[] counts = collectMatches(corrected, found);
+                if (found.isEmpty()) {
+                    continue;
+                }
+                distance = d;
+                for (int i = 0; i < found.size(); i++) {
+                    Item item = found.get(i);
+                    if (inventory.contains(item) || rest.contains(item)) {
+                        continue;
+                    }
+                    if (i < counts[0]) {
+                        inventory.add(item);
+                    } else if (i < counts[0] + counts[1]) {
+                        rest.add(roomMatches++, item); // Room matches stay ahead of container matches
+                    } else {
+                        rest.add(item);
+                    }
+                }
+            }
+            if (distance >= 0) {
+                candidates.addAll(inventory);
+                candidates.addAll(rest);
+                return new int[] { inventory.size(), roomMatches };
+            }
+        }
+        return new int[] { 0, 0 };
+    }
+
+    // Called at the start of every command and whenever an item changes place
+    public void invalidate() {
+        memo.clear();
+    }
+}
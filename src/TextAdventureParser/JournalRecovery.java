@@ -0,0 +1,173 @@
+package TextAdventureParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Rebuilds sessions from a CommandJournal directory after a restart or crash.
+ * Scans every segment in order and keeps, per session, its latest checkpoint and
+ * the commands journaled after it. Restoring a session loads the checkpoint and
+ * replays those commands through the game's normal dispatch path, with the output
+ * thrown away. Records cut short by a crash fail their length or CRC check; the rest
+ * of that segment is skipped, which only loses commands whose response was never sent.
+ * <p>
+ * Usage: JournalRecovery &lt;journal directory&gt; [world image], to time a full recovery.
+ */
+public class JournalRecovery {
+    private Map<Long, SessionLog> sessions;
+    private int segments;
+    private long records;
+    private long bytes;
+    private long scanNanos;
+
+    /**
+     * What the journal holds for one session.
+     */
+    public static class SessionLog {
+        private final long sessionId;
+        private byte[] checkpoint;      // SaveCodec snapshot
+        private List<String> commands;  // Journaled after the checkpoint, in order
+        private long lastSeq;
+        private boolean ended;
+
+        SessionLog(long sessionId) {
+            this.sessionId = sessionId;
+            this.commands = new ArrayList<>();
+        }
+
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        public long getLastSeq() {
+            return lastSeq;
+        }
+
+        public int getReplayLength() {
+            return commands.size();
+        }
+
+        /**
+         * Brings a game that was just created on the journal's world template to the
+         * state the session had when its last durable command was journaled.
+         * @return The number of commands replayed.
+         */
+        public int restore(Game game) throws IOException {
+            if (checkpoint != null) {
+                SaveCodec.restore(game, checkpoint);
+            }
+            for (String command : commands) {
+                game.replay(command);
+            }
+            return commands.size();
+        }
+    }
+
+    // Times recovering every session in a journal directory
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalRecovery <journal directory> [world image]");
+            System.exit(2);
+        }
+        WorldTemplate template = args.length > 1
+                ? WorldTemplate.fromImage(WorldImage.open(Path.of(args[1])))
+                : WorldTemplate.getDefault();
+        JournalRecovery recovery = scan(Path.of(args[0]));
+        long start = System.nanoTime();
+        long replayed = 0;
+        for (SessionLog log : recovery.getSessions().values()) {
+            replayed += log.restore(new Game(template, new BatchIO(Collections.emptyList(), 1, null)));
+        }
+        long replayNanos = System.nanoTime() - start;
+        System.out.printf("%s%nReplayed %d commands in %.1f ms; recovery took %.1f ms in total%n",
+                recovery, replayed, replayNanos / 1e6, (recovery.getScanNanos() + replayNanos) / 1e6);
+    }
+
+    public static JournalRecovery scan(Path directory) throws IOException {
+        JournalRecovery recovery = new JournalRecovery();
+        long start = System.nanoTime();
+        for (Path segment : CommandJournal.listSegments(directory)) {
+            recovery.scanSegment(Files.readAllBytes(segment));
+            recovery.segments++;
+        }
+        recovery.sessions.values().removeIf(log -> log.ended);
+        recovery.scanNanos = System.nanoTime() - start;
+        return recovery;
+    }
+
+    private JournalRecovery() {
+        this.sessions = new LinkedHashMap<>();
+    }
+
+    private void scanSegment(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        bytes += data.length;
+        while (in.remaining() >= CommandJournal.RECORD_HEADER_SIZE) {
+            byte type = in.get();
+            long sessionId = in.getLong();
+            long seq = in.getLong();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (type < CommandJournal.COMMAND || type > CommandJournal.END || length < 0 || length > in.remaining()) {
+                return; // Torn write at the end of the segment
+            }
+            byte[] payload = new byte[length];
+            in.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+            records++;
+
+            SessionLog log = sessions.computeIfAbsent(sessionId, SessionLog::new);
+            switch (type) {
+                case CommandJournal.COMMAND:
+                    log.commands.add(new String(payload, StandardCharsets.UTF_8));
+                    log.ended = false;
+                    break;
+                case CommandJournal.CHECKPOINT:
+                    log.checkpoint = payload;
+                    log.commands.clear(); // The snapshot already includes them
+                    log.ended = false; // A session id may be resumed after it ended
+                    break;
+                default: // END
+                    log.ended = true;
+                    break;
+            }
+            log.lastSeq = Math.max(log.lastSeq, seq);
+        }
+    }
+
+    // Sessions that were still running, by session id
+    public Map<Long, SessionLog> getSessions() {
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    public SessionLog getSession(long sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    @Override
+    public String toString() {
+        long replay = 0;
+        for (SessionLog log : sessions.values()) {
+            replay += log.getReplayLength();
+        }
+        return String.format("Scanned %d segments (%d records, %d bytes) in %.1f ms: %d sessions to recover, %d commands to replay",
+                segments, records, bytes, scanNanos / 1e6, sessions.size(), replay);
+    }
+}
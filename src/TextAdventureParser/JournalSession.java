@@ -0,0 +1,84 @@
+package TextAdventureParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One game session's view of the shared CommandJournal. Numbers the session's
+ * commands, decides when to checkpoint, and remembers the ticket of its latest
+ * record so the game can hold a response back until the command is durable.
+ * Used by whichever thread holds the session's turn lock only (except for the
+ * checkpoint positions, which the journal's flusher reads).
+ */
+public class JournalSession {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 500; // Commands between checkpoints
+
+    private final CommandJournal journal;
+    private final long sessionId;
+    private final int checkpointInterval;
+    private long seq;
+    private int commandsSinceCheckpoint;
+    private int checkpointSegment;
+    private long lastTicket;
+    private volatile long pendingCheckpoint = -1; // Ticket of the latest checkpoint
+    private volatile long durableCheckpoint = -1; // Ticket of the latest checkpoint known to be on disk
+
+    JournalSession(CommandJournal journal, long sessionId, long lastSeq) {
+        this(journal, sessionId, lastSeq, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    JournalSession(CommandJournal journal, long sessionId, long lastSeq, int checkpointInterval) {
+        this.journal = journal;
+        this.sessionId = sessionId;
+        this.seq = lastSeq;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Journals a command that has just been executed. Checkpoints afterwards if
+     * enough commands have piled up or the journal started a new segment.
+     */
+    public void commandAccepted(Game game, String line) {
+        lastTicket = journal.append(CommandJournal.COMMAND, sessionId, ++seq, line.getBytes(StandardCharsets.UTF_8));
+        if (++commandsSinceCheckpoint >= checkpointInterval || journal.getSegment() != checkpointSegment) {
+            checkpoint(game);
+        }
+    }
+
+    // Journals a snapshot of the game that covers every command so far
+    public void checkpoint(Game game) {
+        checkpointSegment = journal.getSegment();
+        lastTicket = journal.append(CommandJournal.CHECKPOINT, sessionId, seq, SaveCodec.snapshot(game));
+        pendingCheckpoint = lastTicket;
+        commandsSinceCheckpoint = 0;
+    }
+
+    // Blocks until everything this session journaled is on disk
+    public void awaitDurable() throws IOException {
+        journal.awaitDurable(lastTicket);
+    }
+
+    // Marks the session as finished; recovery skips ended sessions
+    public void end() throws IOException {
+        lastTicket = journal.append(CommandJournal.END, sessionId, seq, new byte[0]);
+        journal.sessionEnded(this);
+        awaitDurable();
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    // Called by the flusher with the current durable position
+    long durableCheckpoint(long durablePosition) {
+        long pending = pendingCheckpoint;
+        if (pending >= 0 && pending <= durablePosition) {
+            durableCheckpoint = pending;
+        }
+        return durableCheckpoint;
+    }
+}
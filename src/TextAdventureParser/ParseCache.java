@@ -0,0 +1,160 @@
+package TextAdventureParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache from input lines to their ParsedCommand, shared by every session.
+ * Players type the same few lines over and over ("n", "look", "take key"), so a hit
+ * skips tokenizing and grammar matching entirely. Lines are keyed exactly as read:
+ * normalizing them would take the scan the cache is there to avoid, and variants
+ * ("N", "take the key") simply get entries of their own. Lines longer than
+ * MAX_LINE_LENGTH are never cached: nobody types them twice, and an entry holds the
+ * line and its words, so a client pasting long lines could fill the heap.
+ * <p>
+ * The entries are split over independently locked segments, each a LinkedHashMap
+ * in access order (LRU) or insertion order (FIFO), so sessions rarely contend.
+ */
+public class ParseCache {
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    public static final int MAX_LINE_LENGTH = 256;
+    private static final int MAX_SEGMENTS = 16;
+
+    public enum Eviction { LRU, FIFO }
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int maxEntries;
+    private final Eviction eviction;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    @SuppressWarnings("serial") // Never serialized
+    private class Segment extends LinkedHashMap<String, ParsedCommand> {
+        private final int capacity;
+
+        Segment(int capacity, boolean accessOrder) {
+            super(16, 0.75f, accessOrder);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParsedCommand> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public ParseCache() {
+        this(DEFAULT_MAX_ENTRIES, Eviction.LRU);
+    }
+
+    /**
+     * @param maxEntries Lines kept before old ones are evicted; 0 turns the cache off.
+     * @param eviction Which line goes first when a segment is full.
+     */
+    public ParseCache(int maxEntries, Eviction eviction) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= maxEntries / 16) {
+            segmentCount *= 2; // Keep segments at 16+ entries so LRU order stays meaningful
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Spread the remainder so the segment capacities add up to maxEntries
+            int capacity = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+            segments[i] = new Segment(capacity, eviction == Eviction.LRU);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.maxEntries = maxEntries;
+        this.eviction = eviction;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * @return The cached parse of this exact line, or null.
+     */
+    public ParsedCommand get(String line) {
+        if (maxEntries == 0 || line.length() > MAX_LINE_LENGTH) {
+            return null;
+        }
+        Segment segment = segmentFor(line);
+        ParsedCommand command;
+        synchronized (segment) {
+            command = segment.get(line); // Moves the entry to the back in LRU mode
+        }
+        if (command != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return command;
+    }
+
+    public void put(String line, ParsedCommand command) {
+        if (maxEntries == 0 || line.length() > MAX_LINE_LENGTH) {
+            return;
+        }
+        Segment segment = segmentFor(line);
+        synchronized (segment) {
+            segment.put(line, command);
+        }
+    }
+
+    private Segment segmentFor(String line) {
+        int hash = line.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("parse cache %d/%d lines (%s), hits %d, misses %d (%.1f%% hit), evictions %d",
+                size(), maxEntries, eviction, getHits(), getMisses(), getHitRate() * 100, getEvictions());
+    }
+}
@@ -0,0 +1,31 @@
+package TextAdventureParser;
+
+import java.util.List;
+
+/**
+ * A command line after tokenizing and grammar matching: which verb and pattern
+ * matched, and where each argument lies in the words. Immutable, so one instance
+ * can sit in the shared ParseCache and be replayed by any session.
+ */
+public class ParsedCommand {
+    final int verb;
+    final int pattern;
+    final List<String> tokens; // Copy of the kept words, verb first
+    final int[] bindings;      // Argument spans, in CommandMatch's layout
+
+    ParsedCommand(int verb, int pattern, List<String> tokens, int[] bindings) {
+        this.verb = verb;
+        this.pattern = pattern;
+        this.tokens = tokens;
+        this.bindings = bindings;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", tokens);
+    }
+}
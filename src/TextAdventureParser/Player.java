@@ -1,16 +1,28 @@
 package TextAdventureParser;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Collections;
 
 public class Player {
     private Room currentRoom;
     private List<Item> inventory;
+    private AliasIndex inventoryIndex; // Alias lookups for the items being carried
+    private String inventoryDescription; // Cached text for the inventory command, cleared on every change
+    private boolean inventoryDirty; // Changed since the last save, see SessionSaver
+    private BitSet visitedRooms; // Room ids the player has been in, for "go to"
+    private BitSet visitedSinceSave;
 
     public Player(Room startRoom) {
         this.currentRoom = startRoom;
         this.inventory = new ArrayList<>();
+        this.inventoryIndex = new AliasIndex();
+        this.visitedRooms = new BitSet();
+        this.visitedSinceSave = new BitSet();
+        if (startRoom.getId() >= 0) {
+            visitedRooms.set(startRoom.getId()); // A new session, so nothing to save yet
+        }
     }
 
     public Room getCurrentRoom() {
@@ -20,6 +32,31 @@ public class Player {
     // New method to set the player's current room
     public void setCurrentRoom(Room newRoom) {
         this.currentRoom = newRoom;
+        markVisited(newRoom.getId());
+    }
+
+    public boolean hasVisited(int roomId) {
+        return roomId >= 0 && visitedRooms.get(roomId);
+    }
+
+    // Read-only by convention; SaveCodec writes it out
+    BitSet getVisitedRooms() {
+        return visitedRooms;
+    }
+
+    BitSet getVisitedSinceSave() {
+        return visitedSinceSave;
+    }
+
+    void markVisited(int roomId) {
+        if (roomId >= 0 && !visitedRooms.get(roomId)) {
+            visitedRooms.set(roomId);
+            visitedSinceSave.set(roomId);
+        }
+    }
+
+    public void clearVisitedSinceSave() {
+        visitedSinceSave.clear();
     }
 
     public List<Item> getItemInventoryList() {
@@ -36,11 +73,30 @@ public class Player {
     }
     */
 
+    public AliasIndex getInventoryIndex() {
+        return inventoryIndex;
+    }
+
     public void addItem(Item item) {
         inventory.add(item);
+        inventoryIndex.add(item);
+        inventoryDescription = null;
+        inventoryDirty = true;
     }
     public void removeItem(Item item) {
-        inventory.remove(item);
+        if (inventory.remove(item)) {
+            inventoryIndex.remove(item);
+            inventoryDescription = null;
+            inventoryDirty = true;
+        }
+    }
+
+    public boolean isInventoryDirty() {
+        return inventoryDirty;
+    }
+
+    public void clearInventoryDirty() {
+        inventoryDirty = false;
     }
     public Item getItemFromInventory(String itemName) {
         for (Item item : inventory) {
@@ -51,14 +107,18 @@ public class Player {
         return null;
     }
     public String getInventoryDescription() {
-        String invString = "Inventory: ";
+        if (inventoryDescription != null) {
+            return inventoryDescription;
+        }
+        StringBuilder invString = new StringBuilder("Inventory: ");
         if (inventory.isEmpty()) {
-            invString += "empty";
+            invString.append("empty");
         } else {
             for (Item item : inventory) {
-                invString += item.getName() + " ";
+                invString.append(item.getName()).append(' ');
             }
         }
-        return invString;
+        inventoryDescription = invString.toString();
+        return inventoryDescription;
     }
 }
@@ -0,0 +1,228 @@
+package TextAdventureParser;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded cache of template rooms for worlds too big to keep in heap.
+ * Rooms are grouped into regions of consecutive room ids; a region is loaded as a
+ * whole the first time any of its rooms is needed and an unused region is dropped
+ * when the cache is full. Template rooms are frozen, so an evicted region never has
+ * to be written back: everything a session changed lives in its WorldState.
+ * <p>
+ * A region is decoded outside the map: the first session to miss puts a future in,
+ * decodes, and completes it, while sessions wanting the same region wait on the future
+ * and everyone else carries on. Eviction is a clock (second chance): resident regions
+ * sit in a ring, a hit only sets the region's referenced flag, and a new region takes
+ * the first slot whose flag is clear, clearing the ones it passes. That approximates
+ * LRU at a constant cost per load instead of a scan of every region.
+ */
+public class RegionCache implements AutoCloseable {
+    public static final int DEFAULT_REGION_SIZE = 256;   // Rooms per region
+    public static final int DEFAULT_MAX_REGIONS = 4096;  // About a million rooms resident
+
+    private final IntFunction<Room> roomLoader;
+    private final int roomCount;
+    private final int regionSize;
+    private final int maxRegions;
+    private final Map<Integer, CompletableFuture<Region>> regions;
+    private final int[] clock;   // Resident region ids; guarded by itself, like hand and resident
+    private int hand;
+    private int resident;
+    private final ExecutorService prefetcher;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder prefetches;
+
+    private static class Region {
+        final Room[] rooms;
+        volatile boolean referenced; // Used since the clock hand last passed it
+
+        Region(Room[] rooms) {
+            this.rooms = rooms;
+        }
+    }
+
+    /**
+     * @param roomLoader Creates a frozen template room from backing storage.
+     * @param roomCount Number of rooms in the world.
+     * @param regionSize Rooms per region.
+     * @param maxRegions Regions kept resident before an unused one is evicted.
+     */
+    public RegionCache(IntFunction<Room> roomLoader, int roomCount, int regionSize, int maxRegions) {
+        if (regionSize < 1 || maxRegions < 1) {
+            throw new IllegalArgumentException("Region size and cache size must be positive");
+        }
+        this.roomLoader = roomLoader;
+        this.roomCount = roomCount;
+        this.regionSize = regionSize;
+        this.maxRegions = maxRegions;
+        this.regions = new ConcurrentHashMap<>();
+        this.clock = new int[maxRegions];
+        this.prefetcher = Executors.newVirtualThreadPerTaskExecutor();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.prefetches = new LongAdder();
+    }
+
+    public Room getRoom(int roomId) {
+        int regionId = roomId / regionSize;
+        CompletableFuture<Region> entry = regions.get(regionId);
+        Region region = entry != null && entry.isDone() && !entry.isCompletedExceptionally() ? entry.join() : null;
+        if (region != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            region = load(regionId);
+        }
+        if (!region.referenced) {
+            region.referenced = true; // Only written when it changes, to keep hits read-only
+        }
+        return region.rooms[roomId - regionId * regionSize];
+    }
+
+    /**
+     * Loads the regions of the rooms next to roomId in the background, so walking
+     * into a neighbouring region doesn't stall the turn.
+     */
+    public void prefetchNeighbours(ExitGraph exitGraph, int roomId) {
+        int currentRegion = roomId / regionSize;
+        for (int exit = exitGraph.firstExit(roomId); exit < exitGraph.endExit(roomId); exit++) {
+            int target = exitGraph.getExitTarget(exit);
+            if (target < 0) {
+                continue;
+            }
+            int regionId = target / regionSize;
+            if (regionId != currentRegion && !regions.containsKey(regionId)) {
+                try {
+                    prefetcher.execute(() -> load(regionId));
+                    prefetches.increment();
+                } catch (RejectedExecutionException e) {
+                    return; // Closed; the session will load it if it goes there
+                }
+            }
+        }
+    }
+
+    // Stops prefetching; rooms can still be loaded on demand
+    @Override
+    public void close() {
+        prefetcher.shutdown();
+    }
+
+    // Returns the region, decoding it unless another thread already is
+    private Region load(int regionId) {
+        CompletableFuture<Region> entry = regions.get(regionId);
+        if (entry == null) {
+            CompletableFuture<Region> mine = new CompletableFuture<>();
+            entry = regions.putIfAbsent(regionId, mine);
+            if (entry == null) {
+                Region region;
+                try {
+                    region = decode(regionId);
+                } catch (RuntimeException | Error e) {
+                    regions.remove(regionId, mine); // The next miss tries again
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+                mine.complete(region);
+                admit(regionId);
+                return region;
+            }
+        }
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Region decode(int regionId) {
+        int first = regionId * regionSize;
+        Room[] rooms = new Room[Math.min(regionSize, roomCount - first)];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = roomLoader.apply(first + i);
+        }
+        return new Region(rooms);
+    }
+
+    // Gives a newly loaded region a slot on the clock, evicting another if they are all taken
+    private void admit(int regionId) {
+        synchronized (clock) {
+            if (resident < maxRegions) {
+                clock[resident++] = regionId;
+                return;
+            }
+            while (true) {
+                CompletableFuture<Region> entry = regions.get(clock[hand]);
+                Region region = entry != null ? entry.getNow(null) : null;
+                if (region != null && region.referenced) {
+                    region.referenced = false;
+                    hand = (hand + 1) % maxRegions;
+                    continue;
+                }
+                if (entry != null) {
+                    regions.remove(clock[hand], entry);
+                    evictions.increment();
+                }
+                clock[hand] = regionId;
+                hand = (hand + 1) % maxRegions;
+                return;
+            }
+        }
+    }
+
+    public int getResidentRegions() {
+        return regions.size();
+    }
+
+    public int getMaxRegions() {
+        return maxRegions;
+    }
+
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getPrefetches() {
+        return prefetches.sum();
+    }
+
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("regions %d/%d (%d rooms each), hits %d, misses %d (%.1f%% hit), evictions %d, prefetches %d",
+                getResidentRegions(), maxRegions, regionSize, getHits(), getMisses(), getHitRate() * 100,
+                getEvictions(), getPrefetches());
+    }
+}
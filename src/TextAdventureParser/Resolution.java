@@ -0,0 +1,68 @@
+package TextAdventureParser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of matching one noun phrase against the items in reach.
+ * Carries every candidate together with where it was found, so callers can
+ * report an ambiguity or check an item's location without searching again.
+ */
+public class Resolution {
+    public enum Status { UNIQUE, AMBIGUOUS, NONE }
+
+    public enum Location { INVENTORY, ROOM, CONTAINER } // CONTAINER: inside an open container in reach
+
+    private final List<Item> candidates;   // Inventory matches first, then room matches, then open containers
+    private final int inventoryMatches;    // How many of the candidates are being carried
+    private final int roomMatches;         // How many lie in the room
+
+    public Resolution(List<Item> candidates, int inventoryMatches) {
+        this(candidates, inventoryMatches, candidates.size() - inventoryMatches);
+    }
+
+    public Resolution(List<Item> candidates, int inventoryMatches, int roomMatches) {
+        this.candidates = Collections.unmodifiableList(candidates);
+        this.inventoryMatches = inventoryMatches;
+        this.roomMatches = roomMatches;
+    }
+
+    public Status getStatus() {
+        switch (candidates.size()) {
+            case 0: return Status.NONE;
+            case 1: return Status.UNIQUE;
+            default: return Status.AMBIGUOUS;
+        }
+    }
+
+    public boolean isUnique() {
+        return candidates.size() == 1;
+    }
+
+    public boolean isAmbiguous() {
+        return candidates.size() > 1;
+    }
+
+    /**
+     * @return The matched item, or null unless the match is unique.
+     */
+    public Item getItem() {
+        return isUnique() ? candidates.get(0) : null;
+    }
+
+    // True if the phrase matched exactly one item and it is at the given location
+    public boolean isUniqueIn(Location location) {
+        return isUnique() && getLocation(0) == location;
+    }
+
+    public List<Item> getCandidates() {
+        return candidates;
+    }
+
+    public Location getLocation(int candidate) {
+        if (candidate < inventoryMatches) {
+            return Location.INVENTORY;
+        }
+        return candidate < inventoryMatches + roomMatches ? Location.ROOM : Location.CONTAINER;
+    }
+}
@@ -0,0 +1,40 @@
+package TextAdventureParser;
+
+/**
+ * Collects everything a turn prints, so the whole response reaches the session's
+ * GameIO as a single write instead of one call per fragment.
+ */
+public class ResponseWriter {
+    private final GameIO io;
+    private final StringBuilder buffer;
+
+    public ResponseWriter(GameIO io) {
+        this.io = io;
+        this.buffer = new StringBuilder(256);
+    }
+
+    public void print(String text) {
+        buffer.append(text);
+    }
+
+    public void println(String text) {
+        buffer.append(text).append('\n');
+    }
+
+    public void println() {
+        buffer.append('\n');
+    }
+
+    // Drops the buffered response, e.g. for commands replayed during recovery
+    public void discard() {
+        buffer.setLength(0);
+    }
+
+    // Sends the buffered response (if any) to the session's IO and starts a new one
+    public void flush() {
+        if (buffer.length() > 0) {
+            io.print(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+}
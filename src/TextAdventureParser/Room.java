@@ -5,20 +5,53 @@ import java.util.List;
 import java.util.Collections; // Import Collections
 
 public class Room {
+    private int id = -1; // Numeric id, assigned when the exit graph is compiled
     private String description;
     private List<Item> items;
+    private AliasIndex aliasIndex; // Alias lookups for the items in this room
+    private boolean frozen; // Template rooms are shared between sessions and must not change
+    private volatile String cachedView; // Rendered "look" text, cleared whenever the contents change
 
     public Room(String description) {
         this.description = description;
         this.items = new ArrayList<>();
+        this.aliasIndex = new AliasIndex();
+    }
+
+    // Copy of a (template) room that a single session can modify
+    public Room(Room template) {
+        this.id = template.id;
+        this.description = template.description;
+        this.items = new ArrayList<>(template.items);
+        this.aliasIndex = new AliasIndex(template.aliasIndex);
+        this.cachedView = template.cachedView;
+    }
+
+    // Marks the room and everything in it as shared and read-only
+    public void freeze() {
+        frozen = true;
+        for (Item item : items) {
+            item.freeze();
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
     }
 
     // ... (existing item methods: addItem, removeItem, getItem, etc.) ...
     public void addItem(Item item) {
+        checkNotFrozen();
         items.add(item);
+        aliasIndex.add(item);
+        cachedView = null;
     }
     public void removeItem(Item item) {
-        items.remove(item);
+        checkNotFrozen();
+        if (items.remove(item)) {
+            aliasIndex.remove(item);
+            cachedView = null;
+        }
     }
     public Item getItem(String itemName) {
         for (Item item : items) {
@@ -32,9 +65,36 @@ public class Room {
         return Collections.unmodifiableList(items); // Return an unmodifiable list
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    // Shared template rooms may cache too: the view is the same for every session that hasn't changed the room
+    public String getCachedView() {
+        return cachedView;
+    }
+
+    public void setCachedView(String view) {
+        this.cachedView = view;
+    }
+
+    public AliasIndex getAliasIndex() {
+        return aliasIndex;
+    }
+
     public String getDescription() { // New getter for description
         return description;
     }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Template room is shared; modify the session copy from WorldState.mutableRoom()");
+        }
+    }
     
     /**
      * Get the full description of the room, including available exits and items.
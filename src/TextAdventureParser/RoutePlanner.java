@@ -0,0 +1,415 @@
+package TextAdventureParser;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Shortest routes between rooms over the exit graph, for "go to". Shared by every
+ * session of a world. Searches are A* with landmark estimates (see Landmarks): plain
+ * breadth-first search touches every room closer than the goal, which on a large open
+ * world is most of it, while A* mostly stays near the route. The landmark distances take
+ * a few breadth-first passes over the world, made on the first search or by prepare().
+ * <p>
+ * Routes over the whole graph are cached by (from, to) in independently locked LRU
+ * segments. Exits never change once a world is compiled, so the cache only needs
+ * clearing if a world's exits are ever edited in place (see clear()).
+ */
+public class RoutePlanner {
+    public static final int DEFAULT_MAX_ROUTES = 4096;
+    public static final int DEFAULT_LANDMARKS = 8;
+    private static final int SEGMENTS = 16;
+
+    private final ExitGraph exits;
+    private final int[] reverseStart;  // Rooms with an exit into room r live in [reverseStart[r], reverseStart[r + 1])
+    private final int[] reverseSource;
+    private final RouteSegment[] cache;
+    private final int landmarkCount;
+    private volatile Landmarks landmarks; // Computed on the first search
+
+    @SuppressWarnings("serial") // Never serialized
+    private static class RouteSegment extends LinkedHashMap<Long, int[]> {
+        private final int capacity;
+
+        RouteSegment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    public RoutePlanner(ExitGraph exits) {
+        this(exits, DEFAULT_MAX_ROUTES, DEFAULT_LANDMARKS);
+    }
+
+    /**
+     * @param maxRoutes Routes kept in the cache; 0 turns the cache off.
+     * @param landmarks Landmark rooms for distance estimates; each costs 4 bytes per room.
+     */
+    public RoutePlanner(ExitGraph exits, int maxRoutes, int landmarks) {
+        this.exits = exits;
+        this.landmarkCount = landmarks;
+        int roomCount = exits.getRoomCount();
+
+        // Count incoming exits per room, then place each exit's source in its target's row
+        reverseStart = new int[roomCount + 1];
+        for (int room = 0; room < roomCount; room++) {
+            for (int e = exits.firstExit(room); e < exits.endExit(room); e++) {
+                int target = exits.getExitTarget(e);
+                if (target >= 0) {
+                    reverseStart[target + 1]++;
+                }
+            }
+        }
+        for (int room = 0; room < roomCount; room++) {
+            reverseStart[room + 1] += reverseStart[room];
+        }
+        reverseSource = new int[reverseStart[roomCount]];
+        int[] next = Arrays.copyOf(reverseStart, roomCount);
+        for (int room = 0; room < roomCount; room++) {
+            for (int e = exits.firstExit(room); e < exits.endExit(room); e++) {
+                int target = exits.getExitTarget(e);
+                if (target >= 0) {
+                    reverseSource[next[target]++] = room;
+                }
+            }
+        }
+
+        cache = new RouteSegment[maxRoutes > 0 ? SEGMENTS : 0];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new RouteSegment(Math.max(1, maxRoutes / SEGMENTS));
+        }
+    }
+
+    /**
+     * A shortest route over every exit in the world.
+     * @return The room ids from one end to the other (both included), or null if there is no way.
+     */
+    public int[] route(int from, int to) {
+        long key = ((long) from << 32) | (to & 0xffffffffL);
+        RouteSegment segment = cache.length > 0 ? cache[(int) (mix(key) & (SEGMENTS - 1))] : null;
+        if (segment != null) {
+            synchronized (segment) {
+                int[] cached = segment.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        int[] route = search(from, to, null);
+        if (segment != null && route != null) {
+            synchronized (segment) {
+                segment.put(key, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * A shortest route that only passes through rooms the filter allows (the ends always
+     * count as allowed). Not cached, since the filter is usually one player's knowledge.
+     */
+    public int[] route(int from, int to, IntPredicate allowed) {
+        return search(from, to, allowed);
+    }
+
+    // Empties the route cache
+    public void clear() {
+        for (RouteSegment segment : cache) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    // A* over the exit rows, guided by the landmark bounds. Ties go to the room
+    // furthest from the start, which on open areas keeps the search on one line
+    private int[] search(int from, int to, IntPredicate allowed) {
+        if (from == to) {
+            return new int[] { from };
+        }
+        Landmarks bounds = landmarks();
+        RoomMap reached = new RoomMap(); // Room -> (room it was reached from, steps from the start)
+        OpenSet open = new OpenSet();
+        reached.put(from, -1, 0);
+        open.push(bounds.estimate(from, to), 0, from);
+
+        while (!open.isEmpty()) {
+            int steps = open.peekSteps();
+            int room = open.pop();
+            if (steps != reached.distance(room)) {
+                continue; // Reached again by a shorter way since this entry was queued
+            }
+            if (room == to) {
+                int[] route = new int[steps + 1];
+                for (int r = to, i = steps; r >= 0; r = reached.link(r)) {
+                    route[i--] = r;
+                }
+                return route;
+            }
+            for (int e = exits.firstExit(room); e < exits.endExit(room); e++) {
+                int next = exits.getExitTarget(e);
+                if (next < 0 || (allowed != null && next != to && !allowed.test(next))) {
+                    continue;
+                }
+                if (reached.contains(next) && reached.distance(next) <= steps + 1) {
+                    continue;
+                }
+                reached.put(next, room, steps + 1);
+                open.push(steps + 1 + bounds.estimate(next, to), steps + 1, next);
+            }
+        }
+        return null;
+    }
+
+    // Computes the landmark distances now rather than on the first search, e.g. while a server starts
+    public void prepare() {
+        landmarks();
+    }
+
+    private Landmarks landmarks() {
+        Landmarks bounds = landmarks;
+        if (bounds == null) {
+            synchronized (this) {
+                bounds = landmarks;
+                if (bounds == null) {
+                    bounds = new Landmarks(landmarkCount);
+                    landmarks = bounds;
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Exact step counts from and to a few landmark rooms spread over the world. By the
+     * triangle inequality they bound the distance between any two rooms from below,
+     * which is the estimate A* needs. Chosen far apart (each as far as possible from
+     * the ones before), so that some landmark lies roughly behind most targets.
+     */
+    private class Landmarks {
+        private static final char UNKNOWN = Character.MAX_VALUE; // Unreachable, or too far to store
+
+        private final char[][] fromLandmark; // Steps from landmark i to each room
+        private final char[][] toLandmark;   // Steps from each room to landmark i
+
+        Landmarks(int count) {
+            int roomCount = exits.getRoomCount();
+            count = Math.min(count, roomCount);
+            fromLandmark = new char[count][];
+            toLandmark = new char[count][];
+            int[] nearest = new int[roomCount]; // Steps to the closest landmark so far
+            Arrays.fill(nearest, Integer.MAX_VALUE);
+            int landmark = count > 0 ? farthest(distances(0, true), null) : -1;
+            for (int i = 0; i < count && landmark >= 0; i++) {
+                fromLandmark[i] = distances(landmark, true);
+                toLandmark[i] = distances(landmark, false);
+                landmark = farthest(fromLandmark[i], nearest);
+            }
+        }
+
+        // A lower bound on the steps from one room to another
+        int estimate(int room, int goal) {
+            int best = 0;
+            for (int i = 0; i < fromLandmark.length && fromLandmark[i] != null; i++) {
+                char[] from = fromLandmark[i];
+                char[] to = toLandmark[i];
+                if (from[room] != UNKNOWN && from[goal] != UNKNOWN) {
+                    best = Math.max(best, from[goal] - from[room]);
+                }
+                if (to[room] != UNKNOWN && to[goal] != UNKNOWN) {
+                    best = Math.max(best, to[room] - to[goal]);
+                }
+            }
+            return best;
+        }
+
+        // Breadth-first step counts from a room, along the exits or against them
+        private char[] distances(int source, boolean forward) {
+            char[] steps = new char[exits.getRoomCount()];
+            Arrays.fill(steps, UNKNOWN);
+            int[] queue = new int[exits.getRoomCount()];
+            int head = 0;
+            int tail = 0;
+            steps[source] = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int room = queue[head++];
+                int next = steps[room] + 1;
+                if (next >= UNKNOWN) {
+                    continue; // Further rooms stay UNKNOWN, which only weakens the bound
+                }
+                int first = forward ? exits.firstExit(room) : reverseStart[room];
+                int end = forward ? exits.endExit(room) : reverseStart[room + 1];
+                for (int e = first; e < end; e++) {
+                    int neighbour = forward ? exits.getExitTarget(e) : reverseSource[e];
+                    if (neighbour >= 0 && steps[neighbour] == UNKNOWN) {
+                        steps[neighbour] = (char) next;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            return steps;
+        }
+
+        // The reachable room furthest from every landmark so far (updating nearest with these steps)
+        private int farthest(char[] steps, int[] nearest) {
+            int best = -1;
+            int bestSteps = 0;
+            for (int room = 0; room < steps.length; room++) {
+                if (steps[room] == UNKNOWN) {
+                    continue;
+                }
+                int distance = steps[room];
+                if (nearest != null) {
+                    nearest[room] = Math.min(nearest[room], distance);
+                    distance = nearest[room];
+                }
+                if (distance > bestSteps) {
+                    bestSteps = distance;
+                    best = room;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Binary heap of rooms to expand, by estimated route length, then most steps taken.
+     */
+    private static class OpenSet {
+        private long[] keys = new long[64]; // Estimate in the high half, inverted steps in the low half
+        private int[] rooms = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int estimate, int steps, int room) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                rooms = Arrays.copyOf(rooms, size * 2);
+            }
+            long key = ((long) estimate << 32) | (~steps & 0xffffffffL);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                rooms[i] = rooms[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            rooms[i] = room;
+        }
+
+        int peekSteps() {
+            return ~(int) keys[0];
+        }
+
+        int pop() {
+            int top = rooms[0];
+            long key = keys[--size];
+            int room = rooms[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[i] = keys[child];
+                rooms[i] = rooms[child];
+                i = child;
+            }
+            keys[i] = key;
+            rooms[i] = room;
+            return top;
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Open-addressing map from room id to (linked room, distance), sized to what a
+     * search touches rather than to the whole world.
+     */
+    private static class RoomMap {
+        private int[] keys;
+        private long[] values;
+        private int size;
+
+        RoomMap() {
+            keys = new int[64];
+            values = new long[64];
+            Arrays.fill(keys, -1);
+        }
+
+        void put(int room, int link, int distance) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int slot = slot(room);
+            if (keys[slot] < 0) {
+                keys[slot] = room;
+                size++;
+            }
+            values[slot] = ((long) link << 32) | (distance & 0xffffffffL);
+        }
+
+        boolean contains(int room) {
+            return keys[slot(room)] >= 0;
+        }
+
+        int link(int room) {
+            return (int) (values[slot(room)] >> 32);
+        }
+
+        int distance(int room) {
+            return (int) values[slot(room)];
+        }
+
+        // The room's slot, or the empty slot where it would go
+        private int slot(int room) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(room) & mask;
+            while (keys[slot] >= 0 && keys[slot] != room) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] >= 0) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package TextAdventureParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format for saved sessions. A save is a header followed by records:
+ * <pre>
+ * header   magic "TASV", version, room count, item count (to reject saves of another world)
+ * record   type (SNAPSHOT or DELTA), payload length, CRC32 of the payload, payload
+ * payload  current room, inventory (or "unchanged"), changed rooms, changed items, visited rooms
+ * </pre>
+ * A snapshot holds every change the session has made to the template; a delta only
+ * holds the rooms, items and inventory changed since the previous record. Numbers
+ * are written as unsigned varints, so a typical delta is a few dozen bytes.
+ * A record cut short by a crash fails its length or CRC check and is ignored,
+ * along with anything after it.
+ */
+public class SaveCodec {
+    public static final int MAGIC = 0x54415356; // "TASV"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final byte SNAPSHOT = 1;
+    public static final byte DELTA = 2;
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    private SaveCodec() {
+    }
+
+    public static byte[] encodeHeader(WorldTemplate template) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION)
+              .putInt(template.getExitGraph().getRoomCount())
+              .putInt(template.getItemCount());
+        return header.array();
+    }
+
+    /**
+     * Encodes the session as one record and clears its dirty flags.
+     * @param full True for a snapshot of all changes, false for a delta since the last record.
+     */
+    public static byte[] encode(Game game, boolean full) {
+        byte[] record = encodeRecord(game, full);
+        game.getWorld().clearDirty();
+        game.getPlayer().clearInventoryDirty();
+        game.getPlayer().clearVisitedSinceSave();
+        return record;
+    }
+
+    /**
+     * A complete save (header and one snapshot) of the session, e.g. for a journal checkpoint.
+     * Leaves the dirty flags alone, so it doesn't disturb a SessionSaver's next delta.
+     */
+    public static byte[] snapshot(Game game) {
+        byte[] header = encodeHeader(game.getWorld().getTemplate());
+        byte[] record = encodeRecord(game, true);
+        byte[] save = new byte[header.length + record.length];
+        System.arraycopy(header, 0, save, 0, header.length);
+        System.arraycopy(record, 0, save, header.length, record.length);
+        return save;
+    }
+
+    private static byte[] encodeRecord(Game game, boolean full) {
+        WorldState world = game.getWorld();
+        Player player = game.getPlayer();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+
+        writeVarint(payload, player.getCurrentRoom().getId());
+        if (full || player.isInventoryDirty()) {
+            writeVarint(payload, player.getItemInventoryList().size() + 1); // 0 means unchanged
+            writeItemIds(payload, player.getItemInventoryList(), false);
+        } else {
+            writeVarint(payload, 0);
+        }
+
+        List<Room> rooms = new ArrayList<>();
+        if (full) {
+            rooms.addAll(world.getChangedRooms());
+        } else {
+            for (int roomId : world.getDirtyRooms()) {
+                rooms.add(world.getRoom(roomId));
+            }
+        }
+        writeVarint(payload, rooms.size());
+        for (Room room : rooms) {
+            writeVarint(payload, room.getId());
+            writeItemIds(payload, room.getItems(), true);
+        }
+
+        Set<Item> items = full ? world.getChangedItems() : world.getDirtyItems();
+        writeVarint(payload, items.size());
+        for (Item item : items) {
+            writeVarint(payload, item.getId());
+            payload.write(world.isLocked(item) ? 1 : 0);
+            writeItemIds(payload, world.getContents(item), true);
+        }
+
+        // Ascending room ids as gaps, so long runs of explored rooms stay small
+        BitSet visited = full ? player.getVisitedRooms() : player.getVisitedSinceSave();
+        writeVarint(payload, visited.cardinality());
+        int previous = 0;
+        for (int roomId = visited.nextSetBit(0); roomId >= 0; roomId = visited.nextSetBit(roomId + 1)) {
+            writeVarint(payload, roomId - previous);
+            previous = roomId;
+        }
+
+        byte[] body = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        record.put(full ? SNAPSHOT : DELTA).putInt(body.length).putInt((int) crc.getValue()).put(body);
+        return record.array();
+    }
+
+    /**
+     * Applies a whole save (header and records) to a game that has just been created
+     * on the same world template.
+     * @return The number of records applied.
+     * @throws IOException If the save is not for this world or its first record is damaged.
+     */
+    public static int restore(Game game, byte[] save) throws IOException {
+        WorldTemplate template = game.getWorld().getTemplate();
+        ByteBuffer in = ByteBuffer.wrap(save);
+        if (save.length < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not a saved game");
+        }
+        if (in.getInt() != VERSION) {
+            throw new IOException("Unsupported save version");
+        }
+        if (in.getInt() != template.getExitGraph().getRoomCount() || in.getInt() != template.getItemCount()) {
+            throw new IOException("Save belongs to a different world");
+        }
+
+        Map<Integer, Item> items = new HashMap<>(); // One object per item id, see WorldTemplate.getItem
+        int applied = 0;
+        while (in.remaining() >= RECORD_HEADER_SIZE) {
+            byte type = in.get();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if ((type != SNAPSHOT && type != DELTA) || length < 0 || length > in.remaining()) {
+                break; // Torn write at the end of the file
+            }
+            ByteBuffer payload = in.slice(in.position(), length);
+            in.position(in.position() + length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (applied == 0 && type != SNAPSHOT) {
+                throw new IOException("Save does not start with a snapshot");
+            }
+            try {
+                apply(game, payload, items);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Damaged save record", e);
+            }
+            applied++;
+        }
+        game.getWorld().clearDirty();
+        game.getPlayer().clearInventoryDirty();
+        game.getPlayer().clearVisitedSinceSave();
+        game.getScope().rebuild(game.getPlayer());
+        return applied;
+    }
+
+    private static void apply(Game game, ByteBuffer in, Map<Integer, Item> items) throws IOException {
+        WorldState world = game.getWorld();
+        WorldTemplate template = world.getTemplate();
+        int roomCount = template.getExitGraph().getRoomCount();
+
+        int currentRoom = readId(in, roomCount);
+        int inventorySize = readVarint(in) - 1;
+        List<Item> inventory = inventorySize >= 0 ? readItems(in, inventorySize, template, items) : null;
+
+        int rooms = readVarint(in);
+        for (int i = 0; i < rooms; i++) {
+            int roomId = readId(in, roomCount);
+            world.restoreRoom(roomId, readItems(in, readVarint(in), template, items));
+        }
+        int changedItems = readVarint(in);
+        for (int i = 0; i < changedItems; i++) {
+            Item item = itemFor(readId(in, template.getItemCount()), template, items);
+            boolean locked = in.get() != 0;
+            world.restoreItem(item, locked, readItems(in, readVarint(in), template, items));
+        }
+
+        // Rooms first, so the player ends up in the session's copy of their room
+        Player player = game.getPlayer();
+        int visited = readVarint(in);
+        int roomId = 0;
+        for (int i = 0; i < visited; i++) {
+            roomId += readVarint(in);
+            if (roomId < 0 || roomId >= roomCount) {
+                throw new IOException("Id out of range in save: " + roomId);
+            }
+            player.markVisited(roomId);
+        }
+        if (inventory != null) {
+            for (Item item : player.getItemInventoryList().toArray(new Item[0])) {
+                player.removeItem(item);
+            }
+            inventory.forEach(player::addItem);
+        }
+        player.setCurrentRoom(world.getRoom(currentRoom));
+    }
+
+    private static List<Item> readItems(ByteBuffer in, int count, WorldTemplate template, Map<Integer, Item> items)
+            throws IOException {
+        List<Item> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(itemFor(readId(in, template.getItemCount()), template, items));
+        }
+        return result;
+    }
+
+    private static Item itemFor(int itemId, WorldTemplate template, Map<Integer, Item> items) {
+        return items.computeIfAbsent(itemId, template::getItem);
+    }
+
+    private static void writeItemIds(ByteArrayOutputStream out, List<Item> items, boolean withCount) {
+        if (withCount) {
+            writeVarint(out, items.size());
+        }
+        for (Item item : items) {
+            writeVarint(out, item.getId());
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in save");
+    }
+
+    private static int readId(ByteBuffer in, int limit) throws IOException {
+        int id = readVarint(in);
+        if (id < 0 || id >= limit) {
+            throw new IOException("Id out of range in save: " + id);
+        }
+        return id;
+    }
+}
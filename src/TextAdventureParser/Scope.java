@@ -0,0 +1,157 @@
+package TextAdventureParser;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Everything one session can reach right now, and where each item is: carried,
+ * lying in the current room, or inside an open container (at any depth) that is
+ * itself in reach. Answers "is this item in reach" and "where is it" with one
+ * map lookup, and keeps an alias index of the items inside open containers so
+ * the resolver can match them like any other item.
+ * <p>
+ * Kept up to date incrementally: the game reports every move, lock change and
+ * change of room, and only the items involved (and their open contents) are touched.
+ */
+public class Scope {
+    private final WorldState world;
+    private final Map<Item, Entry> entries; // Items are shared template objects, so compare by identity
+    private AliasIndex containedIndex;      // Items in reach inside open containers
+
+    private static final class Entry {
+        final Resolution.Location location;
+        final Item container; // The open container holding it, for CONTAINER
+        final boolean carried; // In the inventory, or inside something that is
+
+        Entry(Resolution.Location location, Item container, boolean carried) {
+            this.location = location;
+            this.container = container;
+            this.carried = carried;
+        }
+    }
+
+    public Scope(WorldState world, Player player) {
+        this.world = world;
+        this.entries = new IdentityHashMap<>();
+        fill(player);
+    }
+
+    // Starts over from the player's inventory and room, e.g. after restoring a save
+    public void rebuild(Player player) {
+        entries.clear();
+        fill(player);
+    }
+
+    private void fill(Player player) {
+        containedIndex = new AliasIndex();
+        for (Item item : player.getItemInventoryList()) {
+            add(item, Resolution.Location.INVENTORY, null, true);
+        }
+        for (Item item : player.getCurrentRoom().getItems()) {
+            add(item, Resolution.Location.ROOM, null, false);
+        }
+    }
+
+    // The player moved: the old room's items leave, the new room's come in
+    public void enterRoom(Room room) {
+        entries.values().removeIf(entry -> !entry.carried);
+        containedIndex = new AliasIndex();
+        for (Map.Entry<Item, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().container != null) {
+                containedIndex.add(entry.getKey());
+            }
+        }
+        for (Item item : room.getItems()) {
+            add(item, Resolution.Location.ROOM, null, false);
+        }
+    }
+
+    /**
+     * An item was moved into the inventory or the room (from anywhere in reach).
+     * Its open contents move with it.
+     */
+    public void moved(Item item, Resolution.Location location) {
+        remove(item);
+        add(item, location, null, location == Resolution.Location.INVENTORY);
+    }
+
+    // An item left reach altogether
+    public void removed(Item item) {
+        remove(item);
+    }
+
+    // Call after locking or unlocking a container: its contents come into or go out of reach
+    public void lockChanged(Item container) {
+        Entry entry = entries.get(container);
+        if (entry == null) {
+            return;
+        }
+        for (Item content : world.getContents(container)) {
+            remove(content);
+        }
+        addContents(container, entry.carried);
+    }
+
+    public boolean contains(Item item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * @return Where the item is, or null if it is out of reach.
+     */
+    public Resolution.Location locate(Item item) {
+        Entry entry = entries.get(item);
+        return entry != null ? entry.location : null;
+    }
+
+    // The open container an item in reach is inside, or null
+    public Item getContainer(Item item) {
+        Entry entry = entries.get(item);
+        return entry != null ? entry.container : null;
+    }
+
+    // True if the item is carried, directly or inside something carried
+    public boolean isCarried(Item item) {
+        Entry entry = entries.get(item);
+        return entry != null && entry.carried;
+    }
+
+    // Alias index of the items inside open containers (not the containers themselves)
+    public AliasIndex getContainedIndex() {
+        return containedIndex;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void add(Item item, Resolution.Location location, Item container, boolean carried) {
+        entries.put(item, new Entry(location, container, carried));
+        if (container != null) {
+            containedIndex.add(item);
+        }
+        addContents(item, carried);
+    }
+
+    private void addContents(Item container, boolean carried) {
+        if (world.isLocked(container)) {
+            return;
+        }
+        for (Item content : world.getContents(container)) {
+            add(content, Resolution.Location.CONTAINER, container, carried);
+        }
+    }
+
+    private void remove(Item item) {
+        Entry entry = entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+        if (entry.container != null) {
+            containedIndex.remove(item);
+        }
+        for (Item content : world.getContents(item)) {
+            remove(content);
+        }
+    }
+}
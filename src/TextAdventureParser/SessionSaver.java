@@ -0,0 +1,128 @@
+package TextAdventureParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Autosaves one session to a file. The session thread only encodes what changed
+ * (see SaveCodec), which takes microseconds; the file is written on a shared pool of
+ * virtual threads, one write after another per session, so the turn loop never waits
+ * for the disk. Most saves append a small delta; every DELTAS_PER_CHECKPOINT saves, or
+ * after a failed write, a full snapshot replaces the file so it never grows for long.
+ */
+public class SessionSaver {
+    public static final int DEFAULT_AUTOSAVE_TURNS = 10;
+    public static final int DELTAS_PER_CHECKPOINT = 64;
+
+    // Shared by every session; blocking file I/O is cheap on virtual threads
+    private static final ExecutorService WRITERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Path file;
+    private int autosaveTurns;
+    private int turnsSinceSave;
+    private int deltasSinceCheckpoint;
+    private boolean needsCheckpoint; // The file doesn't exist yet, or may be missing changes
+    private int lastSavedRoom;
+    private volatile boolean writeFailed;
+    private CompletableFuture<Void> lastWrite; // Writes of this session are chained, so they land in order
+
+    public SessionSaver(Path file) {
+        this(file, DEFAULT_AUTOSAVE_TURNS);
+    }
+
+    /**
+     * @param autosaveTurns Turns between autosaves; every save only writes what changed.
+     */
+    public SessionSaver(Path file, int autosaveTurns) {
+        if (autosaveTurns < 1) {
+            throw new IllegalArgumentException("Autosave interval must be at least one turn");
+        }
+        this.file = file;
+        this.autosaveTurns = autosaveTurns;
+        this.needsCheckpoint = true;
+        this.lastSavedRoom = -1;
+        this.lastWrite = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Restores a game from its save file, if there is one.
+     * @return True if the file existed and was applied.
+     */
+    public static boolean load(Game game, Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        SaveCodec.restore(game, Files.readAllBytes(file));
+        return true;
+    }
+
+    // Called by the game after every command
+    public void turnEnded(Game game) {
+        if (++turnsSinceSave >= autosaveTurns) {
+            save(game);
+        }
+    }
+
+    /**
+     * Encodes the session's changes now and queues them for writing.
+     * Does nothing if nothing changed since the last save.
+     */
+    public void save(Game game) {
+        turnsSinceSave = 0;
+        if (writeFailed) {
+            writeFailed = false;
+            needsCheckpoint = true; // The failed record's changes are only in memory now
+        }
+        boolean full = needsCheckpoint || deltasSinceCheckpoint >= DELTAS_PER_CHECKPOINT;
+        int currentRoom = game.getPlayer().getCurrentRoom().getId();
+        if (!full && currentRoom == lastSavedRoom
+                && !game.getWorld().isDirty() && !game.getPlayer().isInventoryDirty()) {
+            return;
+        }
+
+        byte[] record = SaveCodec.encode(game, full);
+        byte[] header = full ? SaveCodec.encodeHeader(game.getWorld().getTemplate()) : null;
+        lastSavedRoom = currentRoom;
+        needsCheckpoint = false;
+        deltasSinceCheckpoint = full ? 0 : deltasSinceCheckpoint + 1;
+        lastWrite = lastWrite.thenRunAsync(() -> write(header, record), WRITERS);
+    }
+
+    // Waits for queued writes, e.g. when the session ends
+    public void close() {
+        lastWrite.join();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Runs on a writer thread. A snapshot goes to a temporary file first, so a crash
+    // leaves either the old save or the new one, never half of each
+    private void write(byte[] header, byte[] record) {
+        if (header == null && writeFailed) {
+            return; // Appending after a lost record would skip its changes; the next snapshot covers them
+        }
+        try {
+            if (header != null) {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                byte[] save = new byte[header.length + record.length];
+                System.arraycopy(header, 0, save, 0, header.length);
+                System.arraycopy(record, 0, save, header.length, record.length);
+                Files.write(temp, save);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.write(file, record, StandardOpenOption.APPEND);
+            }
+        } catch (IOException | RuntimeException e) {
+            writeFailed = true;
+            System.err.println("Autosave to " + file + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package TextAdventureParser;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One world that many sessions play in together: every session's Game works on the
+ * same WorldState, so an item one player drops is there for the next player to take.
+ * <p>
+ * Everything that holds items is guarded by a lock stripe: a room (with the containers
+ * lying in it, at any depth) by its room's stripe, a player's inventory (with the
+ * containers being carried) by the player's stripe. A session holds the stripes of
+ * its current room and its own player for a whole command (see Game), so moving an
+ * item between a room, an inventory and a container is atomic: two players taking the
+ * same sword are serialized, and the second one no longer finds it. Stripes are always
+ * taken in ascending order, so sessions locking any set of holders can't deadlock.
+ * <p>
+ * Players in rooms on different stripes never wait for each other; everything else they
+ * share (the template, parse cache and metrics) is already safe for concurrent use.
+ * Sessions in a shared world are not saved or journalled: a save holds one player's
+ * view of the world, which another player may have changed since.
+ */
+public class SharedWorld {
+    public static final int DEFAULT_STRIPES = 1024;
+
+    private final WorldState state;
+    private final ReentrantLock[] stripes;
+    private final AtomicInteger players;
+    private final LongAdder locked;
+    private final LongAdder contended;
+
+    /**
+     * A set of stripes held by one session, released with close().
+     */
+    public static final class Hold implements AutoCloseable {
+        private final ReentrantLock[] locks; // In the order they were taken
+
+        private Hold(ReentrantLock[] locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    public SharedWorld(WorldTemplate template) {
+        this(template, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripeCount Rounded up to a power of two; more stripes, fewer rooms sharing a lock.
+     */
+    public SharedWorld(WorldTemplate template, int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("A shared world needs at least one lock stripe");
+        }
+        this.state = new WorldState(template, true);
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.players = new AtomicInteger();
+        this.locked = new LongAdder();
+        this.contended = new LongAdder();
+    }
+
+    public WorldTemplate getTemplate() {
+        return state.getTemplate();
+    }
+
+    public WorldState getState() {
+        return state;
+    }
+
+    // A new player's id, for its stripe
+    int newPlayer() {
+        return players.incrementAndGet();
+    }
+
+    public int roomStripe(int roomId) {
+        return mix(roomId * 2) & (stripes.length - 1);
+    }
+
+    public int playerStripe(int playerId) {
+        return mix(playerId * 2 + 1) & (stripes.length - 1);
+    }
+
+    /**
+     * Takes the stripes, lowest first, each once, waiting for sessions that hold them.
+     * @return The hold to close() once the command is done.
+     */
+    public Hold lock(int... stripeNumbers) {
+        int[] order = stripeNumbers.clone();
+        Arrays.sort(order);
+        int count = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || order[i] != order[i - 1]) {
+                order[count++] = order[i];
+            }
+        }
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = stripes[order[i]];
+            if (!locks[i].tryLock()) {
+                contended.increment();
+                locks[i].lock();
+            }
+        }
+        locked.add(count);
+        return new Hold(locks);
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public int getPlayers() {
+        return players.get();
+    }
+
+    // Stripes taken so far, and how many of them another session was holding
+    public long getLocks() {
+        return locked.sum();
+    }
+
+    public long getContendedLocks() {
+        return contended.sum();
+    }
+
+    // Room ids are dense, so spread them before masking
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("shared world: %d players joined, %d rooms changed, %d locks (%d contended)",
+                getPlayers(), state.getChangedRoomCount(), getLocks(), getContendedLocks());
+    }
+}
@@ -0,0 +1,262 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds the dictionary words within a small edit distance of a misspelled word
+ * (insertions, deletions, substitutions and swaps of neighbouring letters), using
+ * symmetric deletes: every word is stored under each string that deleting up to
+ * maxDistance of its letters gives, and a lookup only probes the deletes of the
+ * input. Two words within distance d always share such a string, so a lookup costs
+ * a few dozen probes whatever the size of the dictionary. Candidates are then
+ * checked with the real distance.
+ * <p>
+ * Deletes are stored as 32-bit hashes next to the word's Vocabulary id in one sorted
+ * long[], so no delete strings are kept and a hash collision only costs a wasted check.
+ * Immutable once built, so one index is shared by every session.
+ */
+public class SpellingIndex {
+    public static final int DEFAULT_MAX_DISTANCE = 1;
+    private static final int MAX_CANDIDATES = 64; // Checked per lookup, to bound the latency
+
+    private final Vocabulary vocabulary;
+    private final int maxDistance;
+    private final int[] wordIds;  // The dictionary, sorted
+    private final long[] entries; // (delete hash << 32) | word id, sorted
+
+    /**
+     * Builds an index over the words, interning them into the vocabulary.
+     * @param maxDistance The largest distance corrected (1 or 2; every step multiplies the size).
+     */
+    public static SpellingIndex build(Vocabulary vocabulary, Collection<String> words, int maxDistance) {
+        int[] ids = new int[words.size()];
+        int count = 0;
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                ids[count++] = vocabulary.intern(word);
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return new SpellingIndex(vocabulary, Arrays.copyOf(ids, unique), maxDistance);
+    }
+
+    private SpellingIndex(Vocabulary vocabulary, int[] wordIds, int maxDistance) {
+        this.vocabulary = vocabulary;
+        this.maxDistance = maxDistance;
+        this.wordIds = wordIds;
+
+        LongList deletes = new LongList(wordIds.length * 8);
+        for (int id : wordIds) {
+            String word = vocabulary.getWord(id);
+            addDeletes(word, 0, maxDistance, new boolean[word.length()], deletes, id);
+        }
+        long[] sorted = Arrays.copyOf(deletes.values, deletes.size);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        this.entries = Arrays.copyOf(sorted, unique);
+    }
+
+    // The same dictionary with another distance limit
+    public SpellingIndex withMaxDistance(int maxDistance) {
+        return new SpellingIndex(vocabulary, wordIds, maxDistance);
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int size() {
+        return wordIds.length;
+    }
+
+    // Whether the word is in the dictionary exactly
+    public boolean contains(String word) {
+        int id = vocabulary.id(word);
+        return id >= 0 && Arrays.binarySearch(wordIds, id) >= 0;
+    }
+
+    /**
+     * The dictionary words close to a word, nearest first (then alphabetically), leaving
+     * out the word itself. Short words get less slack: a third of their length, so
+     * two-letter words are never corrected.
+     */
+    public List<String> corrections(String word) {
+        List<String> result = new ArrayList<>();
+        int allowed = Math.min(maxDistance, word.length() / 3);
+        if (allowed == 0) {
+            return result;
+        }
+        LongList hashes = new LongList(16);
+        addDeletes(word, 0, allowed, new boolean[word.length()], hashes, 0);
+
+        List<int[]> found = new ArrayList<>(); // {distance, word id}
+        int[] checked = new int[MAX_CANDIDATES];
+        int checkedCount = 0;
+        for (int h = 0; h < hashes.size && checkedCount < MAX_CANDIDATES; h++) {
+            int hash = (int) (hashes.values[h] >> 32);
+            for (int e = firstEntry(hash); e < entries.length && (int) (entries[e] >> 32) == hash; e++) {
+                int id = (int) entries[e];
+                if (contains(checked, checkedCount, id)) {
+                    continue;
+                }
+                if (checkedCount == MAX_CANDIDATES) {
+                    break;
+                }
+                checked[checkedCount++] = id;
+                String candidate = vocabulary.getWord(id);
+                int distance = distance(word, candidate, allowed);
+                if (distance > 0 && distance <= allowed) {
+                    found.add(new int[] { distance, id });
+                }
+            }
+        }
+        found.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : vocabulary.getWord(a[1]).compareTo(vocabulary.getWord(b[1])));
+        for (int[] candidate : found) {
+            result.add(vocabulary.getWord(candidate[1]));
+        }
+        return result;
+    }
+
+    /**
+     * @return The one word nearest to the input, or null if there is none or several tie.
+     */
+    public String correct(String word) {
+        List<String> candidates = corrections(word);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (candidates.size() > 1
+                && distance(word, candidates.get(0), maxDistance) == distance(word, candidates.get(1), maxDistance)) {
+            return null;
+        }
+        return candidates.get(0);
+    }
+
+    /**
+     * Edit distance with swaps of neighbouring letters counted as one edit
+     * (optimal string alignment), giving up once it must exceed limit.
+     * @return The distance, or limit + 1 if it is larger than limit.
+     */
+    public static int distance(CharSequence a, CharSequence b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > limit) {
+            return limit + 1;
+        }
+        int[] twoBack = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, twoBack[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = twoBack;
+            twoBack = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], limit + 1);
+    }
+
+    // Adds (hash << 32 | id) for the word with each set of up to 'remaining' more letters
+    // deleted, choosing deletions left to right from position 'from' so each set comes up once
+    private static void addDeletes(String word, int from, int remaining, boolean[] deleted, LongList out, int id) {
+        out.add(((long) deleteHash(word, deleted) << 32) | (id & 0xffffffffL));
+        if (remaining == 0) {
+            return;
+        }
+        for (int i = from; i < word.length(); i++) {
+            deleted[i] = true;
+            addDeletes(word, i + 1, remaining - 1, deleted, out, id);
+            deleted[i] = false;
+        }
+    }
+
+    // String.hashCode() of the word without the deleted letters
+    private static int deleteHash(String word, boolean[] deleted) {
+        int hash = 0;
+        for (int i = 0; i < word.length(); i++) {
+            if (!deleted[i]) {
+                hash = 31 * hash + word.charAt(i);
+            }
+        }
+        return hash;
+    }
+
+    // Index of the first entry with this hash, or where it would be
+    private int firstEntry(int hash) {
+        long key = (long) hash << 32;
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Growable long[], so building the index doesn't box millions of entries
+    private static final class LongList {
+        long[] values;
+        int size;
+
+        LongList(int capacity) {
+            this.values = new long[Math.max(capacity, 16)];
+        }
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("spelling index: %d words, %d deletes, max distance %d",
+                wordIds.length, entries.length, maxDistance);
+    }
+}
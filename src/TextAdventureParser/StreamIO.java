@@ -0,0 +1,63 @@
+package TextAdventureParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GameIO over a pair of byte streams, e.g. a client socket.
+ * Output is buffered and only written when the session waits for the next
+ * command, so each turn goes out as one write.
+ */
+public class StreamIO implements GameIO {
+    private BufferedReader in;
+    private PrintWriter out;
+
+    public StreamIO(InputStream in, OutputStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public String readLine() {
+        out.flush();
+        try {
+            return in.readLine();
+        } catch (IOException e) {
+            return null; // Treat a broken connection like the end of input
+        }
+    }
+
+    @Override
+    public void print(String text) {
+        out.print(text);
+    }
+
+    @Override
+    public void println(String text) {
+        out.print(text);
+        out.print('\n'); // Same line ending on every platform
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+        out.close();
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nothing useful to do, the session is over
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package TextAdventureParser;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Pending timers, kept in a hierarchical timing wheel: LEVELS wheels of SLOTS slots,
+ * where a slot of level n spans SLOTS^n ticks. A timer goes into the slot of the highest
+ * level at which its deadline and the current tick differ, so inserting it is a shift
+ * and a list append however many timers are pending. When the wheel below completes a
+ * turn, the next slot of the level above is emptied into the levels below ("cascade");
+ * every timer moves down at most LEVELS - 1 times before it expires.
+ * <p>
+ * Each slot is a circular doubly-linked list through the timers themselves, with a
+ * sentinel as its head, so cancelling is an unlink and a pending timer costs one small
+ * object. Four levels of 256 slots reach 2^32 ticks ahead; a later deadline waits in
+ * the top level and is placed again each time its slot comes round.
+ * <p>
+ * Not thread-safe: WorldScheduler holds the wheel's monitor around every call.
+ */
+public class TimingWheel {
+    public static final int LEVELS = 4;
+    public static final int SLOT_BITS = 8;
+    public static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * One scheduled event for one session. Handed out by WorldScheduler.schedule, so it
+     * can be cancelled later; made directly only to drive a wheel by hand, as the checks do.
+     */
+    public static final class Timer {
+        static final int PENDING = 0;
+        static final int EXPIRED = 1;   // Out of the wheel, waiting to run in its session
+        static final int CANCELLED = 2;
+        static final int DONE = 3;
+
+        private final Game session;
+        private final Consumer<Game> event;
+        private long deadline; // The tick it expires on
+        private Timer previous;
+        private Timer next;
+        private int state;
+        long expiredNanos; // When the ticker took it out of the wheel, for the delivery delay
+
+        public Timer(Game session, Consumer<Game> event, long deadline) {
+            this.session = session;
+            this.event = event;
+            this.deadline = deadline;
+        }
+
+        // A slot's list head
+        private Timer() {
+            this(null, null, 0);
+            previous = this;
+            next = this;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        Game getSession() {
+            return session;
+        }
+
+        Consumer<Game> getEvent() {
+            return event;
+        }
+    }
+
+    private final Timer[] slots; // LEVELS * SLOTS list heads, level by level
+    private long tick;
+    private int size;
+
+    public TimingWheel() {
+        this.slots = new Timer[LEVELS * SLOTS];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Timer();
+        }
+    }
+
+    // The last tick advance() has completed
+    public long getTick() {
+        return tick;
+    }
+
+    // Timers still in the wheel
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a timer. A deadline that has already passed is moved to the next tick.
+     */
+    public void add(Timer timer) {
+        timer.deadline = Math.max(timer.deadline, tick + 1);
+        timer.state = Timer.PENDING;
+        place(timer);
+        size++;
+    }
+
+    /**
+     * Stops a timer from running, whether it is still in the wheel or has expired but not run yet.
+     * @return False if it has already run or was cancelled before.
+     */
+    public boolean cancel(Timer timer) {
+        if (timer.state == Timer.PENDING) {
+            unlink(timer);
+            size--;
+        } else if (timer.state != Timer.EXPIRED) {
+            return false;
+        }
+        timer.state = Timer.CANCELLED;
+        return true;
+    }
+
+    /**
+     * Marks an expired timer as run.
+     * @return False if it was cancelled after it expired, so it must not run.
+     */
+    public boolean claim(Timer timer) {
+        if (timer.state != Timer.EXPIRED) {
+            return false;
+        }
+        timer.state = Timer.DONE;
+        return true;
+    }
+
+    /**
+     * Moves on one tick and appends the timers expiring on it to expired.
+     */
+    public void advance(List<Timer> expired) {
+        tick++;
+        // Every level whose lower levels have just turned over passes on its next slot,
+        // highest first, so timers cascading down several levels land in the right place
+        int level = 0;
+        while (level + 1 < LEVELS && (tick & ((1L << ((level + 1) * SLOT_BITS)) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            Timer head = slots[level * SLOTS + slotIndex(tick, level)];
+            Timer timer = head.next;
+            head.next = head;
+            head.previous = head;
+            while (timer != head) {
+                Timer following = timer.next;
+                place(timer);
+                timer = following;
+            }
+        }
+
+        Timer head = slots[slotIndex(tick, 0)];
+        for (Timer timer = head.next; timer != head; timer = timer.next) {
+            timer.state = Timer.EXPIRED;
+            expired.add(timer);
+            size--;
+        }
+        head.next = head;
+        head.previous = head;
+    }
+
+    // Appends the timer to the slot for its deadline, seen from the current tick
+    private void place(Timer timer) {
+        long differing = timer.deadline ^ tick;
+        int level = differing == 0 ? 0 : (63 - Long.numberOfLeadingZeros(differing)) / SLOT_BITS;
+        level = Math.min(level, LEVELS - 1);
+        Timer head = slots[level * SLOTS + slotIndex(timer.deadline, level)];
+        timer.previous = head.previous;
+        timer.next = head;
+        head.previous.next = timer;
+        head.previous = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) (tick >>> (level * SLOT_BITS)) & SLOT_MASK;
+    }
+}
@@ -0,0 +1,197 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What WorldValidator found wrong with a world. Counts are exact; the problems
+ * themselves are listed up to a limit per kind, so a badly broken world with
+ * millions of rooms doesn't produce a report of the same size.
+ */
+public class ValidationReport {
+    public static final int DEFAULT_MAX_LISTED = 1000;
+
+    public enum Kind {
+        DANGLING_EXIT(true),    // Exit to a room that doesn't exist
+        INVALID_EXIT(true),     // Exit key with an unknown room or direction, left out of the world
+        UNREACHABLE_ROOM(false), // No way to get there from the start room
+        ALIAS_COLLISION(false);  // An alias that also matches another item in the same room
+
+        private final boolean error;
+
+        Kind(boolean error) {
+            this.error = error;
+        }
+
+        // Errors break the game when reached; the rest is only suspicious
+        public boolean isError() {
+            return error;
+        }
+    }
+
+    /**
+     * One problem, located by room.
+     */
+    public static class Problem {
+        private final Kind kind;
+        private final int roomId;
+        private final String roomKey;
+        private final String detail;
+
+        Problem(Kind kind, int roomId, String roomKey, String detail) {
+            this.kind = kind;
+            this.roomId = roomId;
+            this.roomKey = roomKey;
+            this.detail = detail;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        // -1 if the problem is in no compiled room, e.g. an exit from an unknown room
+        public int getRoomId() {
+            return roomId;
+        }
+
+        public String getRoomKey() {
+            return roomKey;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " in " + roomKey + ": " + detail;
+        }
+    }
+
+    private final int maxListed;
+    private final Map<Kind, List<Problem>> problems;
+    private final Map<Kind, Long> counts;
+    private int roomCount;
+    private int reachableRooms;
+    private long itemCount;
+    private long nanos;
+
+    public ValidationReport() {
+        this(DEFAULT_MAX_LISTED);
+    }
+
+    public ValidationReport(int maxListed) {
+        this.maxListed = maxListed;
+        this.problems = new EnumMap<>(Kind.class);
+        this.counts = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            problems.put(kind, new ArrayList<>());
+            counts.put(kind, 0L);
+        }
+    }
+
+    void add(Kind kind, int roomId, String roomKey, String detail) {
+        counts.merge(kind, 1L, Long::sum);
+        List<Problem> listed = problems.get(kind);
+        if (listed.size() < maxListed) {
+            listed.add(new Problem(kind, roomId, roomKey, detail));
+        }
+    }
+
+    // Folds in the report of another part of the world
+    void merge(ValidationReport other) {
+        for (Kind kind : Kind.values()) {
+            counts.merge(kind, other.counts.get(kind), Long::sum);
+            List<Problem> listed = problems.get(kind);
+            for (Problem problem : other.problems.get(kind)) {
+                if (listed.size() >= maxListed) {
+                    break;
+                }
+                listed.add(problem);
+            }
+        }
+        itemCount += other.itemCount;
+    }
+
+    void setTotals(int roomCount, int reachableRooms, long nanos) {
+        this.roomCount = roomCount;
+        this.reachableRooms = reachableRooms;
+        this.nanos = nanos;
+    }
+
+    void itemsChecked(int items) {
+        itemCount += items;
+    }
+
+    // The listed problems of one kind, in room order
+    public List<Problem> getProblems(Kind kind) {
+        return Collections.unmodifiableList(problems.get(kind));
+    }
+
+    public long getCount(Kind kind) {
+        return counts.get(kind);
+    }
+
+    public boolean hasErrors() {
+        for (Kind kind : Kind.values()) {
+            if (kind.isError() && counts.get(kind) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isClean() {
+        for (Kind kind : Kind.values()) {
+            if (counts.get(kind) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int getReachableRooms() {
+        return reachableRooms;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * A summary line, then up to a few problems of each kind.
+     */
+    public String toString(int perKind) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Validated %d rooms (%d reachable) and %d items in %.1f ms: %d dangling exits, %d invalid exits, %d unreachable rooms, %d alias collisions",
+                roomCount, reachableRooms, itemCount, nanos / 1e6, getCount(Kind.DANGLING_EXIT), getCount(Kind.INVALID_EXIT),
+                getCount(Kind.UNREACHABLE_ROOM), getCount(Kind.ALIAS_COLLISION)));
+        for (Kind kind : Kind.values()) {
+            List<Problem> listed = problems.get(kind);
+            for (int i = 0; i < Math.min(perKind, listed.size()); i++) {
+                text.append(System.lineSeparator()).append("  ").append(kind.isError() ? "error: " : "warning: ").append(listed.get(i));
+            }
+            if (counts.get(kind) > perKind && !listed.isEmpty()) {
+                text.append(System.lineSeparator()).append("  ... and ").append(counts.get(kind) - Math.min(perKind, listed.size()))
+                    .append(" more");
+            }
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toString(10);
+    }
+}
@@ -0,0 +1,22 @@
+package TextAdventureParser;
+
+/**
+ * JMX view of one verb's calls and latency.
+ * Registered as TextAdventureParser:type=VerbMetrics,world=&lt;name&gt;,verb=&lt;verb&gt;.
+ */
+public interface VerbMetricsMXBean {
+    String getVerb();
+
+    long getCalls();
+
+    double getMeanMicros();
+
+    double getMedianMicros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    // -1 when allocation isn't tracked
+    double getAllocatedBytesPerCall();
+}
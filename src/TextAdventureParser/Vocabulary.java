@@ -0,0 +1,158 @@
+package TextAdventureParser;
+
+/**
+ * Table of the words the game knows about (verbs, directions, noise words,
+ * prepositions and every fragment of every item alias), each with a small int id.
+ * Lookups take a span of characters, so the tokenizer can find a word's id and
+ * canonical String without creating a new one, and items match input words by id.
+ * <p>
+ * Worlds share the global() table, so an id means the same word everywhere and
+ * items can be compiled against it whenever they are first indexed. Adding words
+ * is synchronized; lookups read a published table without locking. A lookup that
+ * races with an add may miss that one word, but only for a word nothing the reader
+ * can see uses yet: items intern their words before handing out their alias keys.
+ */
+public class Vocabulary {
+    private static final Vocabulary GLOBAL = new Vocabulary();
+
+    private volatile Table table;
+    private volatile int size; // Only changed under the lock
+
+    // Open addressing, linear probing; a slot holds id + 1 (0 is empty), size is a power of two
+    private static final class Table {
+        final int[] slots;
+        final String[] words; // Word by id
+
+        Table(int capacity) {
+            this.slots = new int[capacity];
+            this.words = new String[capacity / 2];
+        }
+    }
+
+    public Vocabulary() {
+        this.table = new Table(64);
+    }
+
+    // The table every world template interns its words into
+    public static Vocabulary global() {
+        return GLOBAL;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a word (if new) and returns its canonical instance.
+     */
+    public String add(String word) {
+        return getWord(intern(word, 0, word.length()));
+    }
+
+    public int intern(String word) {
+        return intern(word, 0, word.length());
+    }
+
+    /**
+     * Adds text[start, end) (if new) and returns its id. Only creates a String for a new word,
+     * and only takes the lock for one.
+     */
+    public int intern(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int id = find(table, text, start, end, hash);
+        return id >= 0 ? id : add(text, start, end, hash);
+    }
+
+    private synchronized int add(CharSequence text, int start, int end, int hash) {
+        int id = find(table, text, start, end, hash); // Someone may have added it since
+        if (id >= 0) {
+            return id;
+        }
+        id = size;
+        if (id == table.words.length) {
+            grow();
+        }
+        Table t = table;
+        String word = text.subSequence(start, end).toString();
+        t.words[id] = word; // Before the slot, so a reader that finds the slot usually sees the word
+        int mask = t.slots.length - 1;
+        int slot = hash & mask;
+        while (t.slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        t.slots[slot] = id + 1;
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * @return The id of text[start, end), or -1 if the word is not in the vocabulary.
+     */
+    public int id(CharSequence text, int start, int end) {
+        return find(table, text, start, end, hash(text, start, end));
+    }
+
+    public int id(String word) {
+        return find(table, word, 0, word.length(), word.hashCode());
+    }
+
+    /**
+     * Finds the canonical String equal to text[start, end).
+     * @return The known word, or null if the word is not in the vocabulary.
+     */
+    public String lookup(CharSequence text, int start, int end) {
+        int id = id(text, start, end);
+        return id < 0 ? null : getWord(id);
+    }
+
+    public String getWord(int id) {
+        return table.words[id];
+    }
+
+    // Same hash as String.hashCode(), so words added as Strings can be found by span
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int find(Table t, CharSequence text, int start, int end, int hash) {
+        int mask = t.slots.length - 1;
+        int length = end - start;
+        for (int slot = hash & mask; t.slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = t.slots[slot] - 1;
+            String candidate = t.words[id]; // null while another thread is still adding it
+            if (candidate != null && candidate.length() == length && matches(candidate, text, start)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(String word, CharSequence text, int start) {
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Builds a bigger table and publishes it; readers still on the old one see a consistent copy
+    private void grow() {
+        Table old = table;
+        Table bigger = new Table(old.slots.length * 2);
+        System.arraycopy(old.words, 0, bigger.words, 0, old.words.length);
+        int mask = bigger.slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = old.words[id].hashCode() & mask;
+            while (bigger.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            bigger.slots[slot] = id + 1;
+        }
+        table = bigger;
+    }
+}
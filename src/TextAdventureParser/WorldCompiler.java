@@ -0,0 +1,349 @@
+package TextAdventureParser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline step that compiles a WorldDefinition text file into a WorldImage.
+ * Usage: WorldCompiler &lt;definition.world&gt; &lt;output.twi&gt;
+ */
+public class WorldCompiler {
+    private List<String> roomKeys;                     // Index = room id, in breadth-first order from the start
+    private List<WorldDefinition.ItemDef> items;       // Index = item id
+    private Map<WorldDefinition.ItemDef, Integer> itemIds;
+    private List<Integer> refs;
+    private Map<String, Integer> stringIds;
+    private List<byte[]> strings;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: WorldCompiler <definition.world> <output.twi>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        WorldDefinition definition = WorldDefinition.parse(Path.of(args[0]));
+        new WorldCompiler().compile(definition, Path.of(args[1]));
+        System.out.printf("Compiled %d rooms, %d items, %d exits in %d ms%n",
+                definition.getRooms().size(), definition.getItems().size(), definition.getExits().size(),
+                (System.nanoTime() - start) / 1_000_000);
+        System.out.println(WorldValidator.validate(WorldTemplate.fromImage(WorldImage.open(Path.of(args[1])))));
+    }
+
+    public WorldCompiler() {
+        this.roomKeys = new ArrayList<>();
+        this.items = new ArrayList<>();
+        this.itemIds = new IdentityHashMap<>();
+        this.refs = new ArrayList<>();
+        this.stringIds = new HashMap<>();
+        this.strings = new ArrayList<>();
+    }
+
+    public void compile(WorldDefinition definition, Path output) throws IOException {
+        try (OutputStream out = Files.newOutputStream(output)) {
+            compile(definition, out);
+        }
+    }
+
+    public void compile(WorldDefinition definition, OutputStream output) throws IOException {
+        Map<String, WorldDefinition.RoomDef> rooms = definition.getRooms();
+        Map<String, Integer> roomIds = numberRooms(definition);
+
+        // Number items depth-first so every room's and container's contents can be written as one ref range
+        for (String key : roomKeys) {
+            for (WorldDefinition.ItemDef item : rooms.get(key).items) {
+                numberItem(item, new LinkedHashSet<>());
+            }
+        }
+        for (WorldDefinition.ItemDef item : definition.getOffstageItems()) {
+            numberItem(item, new LinkedHashSet<>()); // After the placed ones, so those keep their ids
+        }
+
+        // Exits, as rows sorted by direction like ExitGraph.compile
+        int roomCount = roomKeys.size();
+        int directionCount = Direction.values().length;
+        int[][] targets = new int[roomCount][];
+        int exitCount = 0;
+        for (Map.Entry<String, String> exit : definition.getExits().entrySet()) {
+            String key = exit.getKey();
+            int colon = key.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Malformed exit key: " + key);
+            }
+            Integer from = roomIds.get(key.substring(0, colon));
+            if (from == null) {
+                throw new IllegalArgumentException("Exit from unknown room: " + key);
+            }
+            Direction direction = Direction.fromWord(key.substring(colon + 1));
+            if (direction == null) {
+                throw new IllegalArgumentException("Unknown direction in exit: " + key);
+            }
+            if (targets[from] == null) {
+                targets[from] = new int[directionCount];
+                Arrays.fill(targets[from], ExitGraph.NO_EXIT);
+            }
+            int slot = direction.ordinal();
+            if (targets[from][slot] == ExitGraph.NO_EXIT) {
+                exitCount++;
+            }
+            Integer to = roomIds.get(exit.getValue());
+            targets[from][slot] = to != null ? to : ExitGraph.MISSING_ROOM; // Kept so the game can report it
+        }
+
+        // Room and item records (ref ranges are filled in as we go)
+        int[][] roomRecords = new int[roomCount][];
+        for (int id = 0; id < roomCount; id++) {
+            WorldDefinition.RoomDef room = rooms.get(roomKeys.get(id));
+            int firstRef = refs.size();
+            for (WorldDefinition.ItemDef item : room.items) {
+                refs.add(itemIds.get(item));
+            }
+            roomRecords[id] = new int[] { stringId(room.key), stringId(room.description), firstRef, room.items.size() };
+        }
+        int[][] itemRecords = new int[items.size()][];
+        for (int id = 0; id < items.size(); id++) {
+            WorldDefinition.ItemDef item = items.get(id);
+            int firstAlias = refs.size();
+            for (String alias : item.aliases) {
+                refs.add(stringId(alias));
+            }
+            int firstChild = refs.size();
+            for (WorldDefinition.ItemDef child : item.contents) {
+                refs.add(itemIds.get(child));
+            }
+            itemRecords[id] = new int[] { stringId(item.name), stringId(item.description), firstAlias,
+                    item.aliases.size(), firstChild, item.contents.size(), item.locked ? WorldImage.FLAG_LOCKED : 0 };
+        }
+
+        // Vocabulary words: the alias words, interned up front when a template opens the image
+        Set<String> wordSet = new LinkedHashSet<>();
+        for (WorldDefinition.ItemDef item : items) {
+            addWords(wordSet, item.name.toLowerCase());
+            for (String alias : item.aliases) {
+                addWords(wordSet, alias);
+            }
+        }
+        List<Integer> words = new ArrayList<>();
+        for (String word : wordSet) {
+            words.add(stringId(word));
+        }
+
+        List<int[]> ruleRecords = new ArrayList<>();
+        for (InteractionRules.RuleDef rule : definition.getRules()) {
+            ruleRecords.add(new int[] { stringId(rule.verb), itemId(definition, rule.item),
+                    rule.preposition != null ? stringId(rule.preposition) : -1, itemId(definition, rule.target),
+                    rule.conditions, rule.effects,
+                    rule.replacement != null ? itemId(definition, rule.replacement) : InteractionRules.NO_ITEM,
+                    stringId(rule.message) });
+        }
+
+        // Section offsets, in long so a huge world is rejected rather than wrapping round;
+        // each section starts after the one before, so checking the end covers them all
+        long rowStartOffset = WorldImage.HEADER_SIZE;
+        long exitDirectionOffset = rowStartOffset + (roomCount + 1L) * 4;
+        long exitTargetOffset = align4(exitDirectionOffset + exitCount);
+        long roomsOffset = exitTargetOffset + exitCount * 4L;
+        long itemsOffset = roomsOffset + roomCount * (long) WorldImage.ROOM_RECORD_SIZE;
+        long refsOffset = itemsOffset + items.size() * (long) WorldImage.ITEM_RECORD_SIZE;
+        long stringOffsetsOffset = refsOffset + refs.size() * 4L;
+        long stringDataOffset = stringOffsetsOffset + (strings.size() + 1L) * 4;
+        long stringDataSize = 0;
+        for (byte[] bytes : strings) {
+            stringDataSize += bytes.length;
+        }
+        long wordsOffset = align4(stringDataOffset + stringDataSize);
+        long rulesOffset = wordsOffset + words.size() * 4L;
+        if (rulesOffset + ruleRecords.size() * (long) WorldImage.RULE_RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("World is too large for a single image");
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(WorldImage.MAGIC);
+        out.writeInt(WorldImage.VERSION);
+        out.writeInt(roomCount);
+        out.writeInt(exitCount);
+        out.writeInt(items.size());
+        out.writeInt(refs.size());
+        out.writeInt(strings.size());
+        out.writeInt(words.size());
+        out.writeInt(roomIds.get(definition.getStartRoom()));
+        out.writeInt((int) rowStartOffset);
+        out.writeInt((int) exitDirectionOffset);
+        out.writeInt((int) exitTargetOffset);
+        out.writeInt((int) roomsOffset);
+        out.writeInt((int) itemsOffset);
+        out.writeInt((int) refsOffset);
+        out.writeInt((int) stringOffsetsOffset);
+        out.writeInt((int) stringDataOffset);
+        out.writeInt((int) wordsOffset);
+        out.writeInt(ruleRecords.size());
+        out.writeInt((int) rulesOffset);
+
+        int exit = 0;
+        for (int id = 0; id < roomCount; id++) {
+            out.writeInt(exit);
+            if (targets[id] != null) {
+                for (int target : targets[id]) {
+                    if (target != ExitGraph.NO_EXIT) {
+                        exit++;
+                    }
+                }
+            }
+        }
+        out.writeInt(exit);
+        for (int id = 0; id < roomCount; id++) {
+            if (targets[id] != null) {
+                for (int d = 0; d < directionCount; d++) {
+                    if (targets[id][d] != ExitGraph.NO_EXIT) {
+                        out.writeByte(d);
+                    }
+                }
+            }
+        }
+        pad(out, (int) (exitTargetOffset - (exitDirectionOffset + exitCount)));
+        for (int id = 0; id < roomCount; id++) {
+            if (targets[id] != null) {
+                for (int target : targets[id]) {
+                    if (target != ExitGraph.NO_EXIT) {
+                        out.writeInt(target);
+                    }
+                }
+            }
+        }
+        for (int[] record : roomRecords) {
+            writeInts(out, record);
+        }
+        for (int[] record : itemRecords) {
+            writeInts(out, record);
+        }
+        for (int ref : refs) {
+            out.writeInt(ref);
+        }
+        int stringOffset = 0;
+        out.writeInt(0);
+        for (byte[] bytes : strings) {
+            stringOffset += bytes.length;
+            out.writeInt(stringOffset);
+        }
+        for (byte[] bytes : strings) {
+            out.write(bytes);
+        }
+        pad(out, (int) (wordsOffset - (stringDataOffset + stringDataSize)));
+        for (int word : words) {
+            out.writeInt(word);
+        }
+        for (int[] record : ruleRecords) {
+            writeInts(out, record);
+        }
+        out.flush();
+    }
+
+    /**
+     * Numbers rooms breadth-first from the start room, so rooms that are close in the
+     * world get close ids and end up in the same RegionCache region. Rooms that can't be
+     * reached follow in sorted order.
+     */
+    private Map<String, Integer> numberRooms(WorldDefinition definition) {
+        Map<String, List<String>> neighbours = new HashMap<>();
+        for (Map.Entry<String, String> exit : definition.getExits().entrySet()) {
+            String from = exit.getKey().substring(0, exit.getKey().indexOf(':'));
+            neighbours.computeIfAbsent(from, k -> new ArrayList<>()).add(exit.getValue());
+        }
+
+        Map<String, Integer> roomIds = new HashMap<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        queue.add(definition.getStartRoom());
+        roomIds.put(definition.getStartRoom(), 0);
+        roomKeys.add(definition.getStartRoom());
+        while (!queue.isEmpty()) {
+            for (String next : neighbours.getOrDefault(queue.poll(), Collections.emptyList())) {
+                if (definition.getRooms().containsKey(next) && !roomIds.containsKey(next)) {
+                    roomIds.put(next, roomKeys.size());
+                    roomKeys.add(next);
+                    queue.add(next);
+                }
+            }
+        }
+        List<String> unreachable = new ArrayList<>();
+        for (String key : definition.getRooms().keySet()) {
+            if (!roomIds.containsKey(key)) {
+                unreachable.add(key);
+            }
+        }
+        Collections.sort(unreachable);
+        for (String key : unreachable) {
+            roomIds.put(key, roomKeys.size());
+            roomKeys.add(key);
+        }
+        return roomIds;
+    }
+
+    private void numberItem(WorldDefinition.ItemDef item, Set<WorldDefinition.ItemDef> path) {
+        if (!path.add(item)) {
+            throw new IllegalArgumentException("Item " + item.key + " is (indirectly) inside itself");
+        }
+        if (itemIds.putIfAbsent(item, items.size()) == null) {
+            items.add(item);
+        }
+        for (WorldDefinition.ItemDef child : item.contents) {
+            numberItem(child, path);
+        }
+        path.remove(item);
+    }
+
+    private int itemId(WorldDefinition definition, String key) {
+        WorldDefinition.ItemDef item = definition.getItems().get(key);
+        if (item == null) {
+            throw new IllegalArgumentException("Rule refers to unknown item " + key);
+        }
+        return itemIds.get(item);
+    }
+
+    private int stringId(String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static void addWords(Set<String> words, String alias) {
+        for (String word : alias.split(" ")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void pad(DataOutputStream out, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeByte(0);
+        }
+    }
+
+    private static long align4(long offset) {
+        return (offset + 3) & ~3L;
+    }
+}
@@ -0,0 +1,260 @@
+package TextAdventureParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A world as written by content authors, parsed from a plain text file.
+ * One definition per line, fields after the first '|' are separated by '|':
+ * <pre>
+ * # comment
+ * start outside
+ * room outside | You are standing outside a dark cave entrance.
+ * exit outside north cave_entrance
+ * item rusty_key cave_entrance | rusty key | A small, rusty iron key. | key, iron key
+ * item lantern chest | lantern | A dusty, old lantern. | dusty lantern
+ * locked chest
+ * rule use rusty_key * chest | locked | unlock, reveal | It clicks open!
+ * </pre>
+ * An item's location is a room id, the id of another item it is inside, or "nowhere"
+ * for items that only come into play through a rule (see InteractionRules).
+ * Definitions can also be built in code (e.g. generated worlds) with the add methods.
+ * WorldCompiler turns a definition into a binary WorldImage.
+ */
+public class WorldDefinition {
+    public static class RoomDef {
+        public final String key;
+        public final String description;
+        public final List<ItemDef> items = new ArrayList<>();
+
+        RoomDef(String key, String description) {
+            this.key = key;
+            this.description = description;
+        }
+    }
+
+    public static class ItemDef {
+        public final String key;
+        public final String name;
+        public final String description;
+        public final List<String> aliases;
+        public final List<ItemDef> contents = new ArrayList<>();
+        public boolean locked;
+
+        ItemDef(String key, String name, String description, List<String> aliases) {
+            this.key = key;
+            this.name = name;
+            this.description = description;
+            this.aliases = aliases;
+        }
+    }
+
+    private String startRoom;
+    private Map<String, RoomDef> rooms;
+    private Map<String, ItemDef> items;
+    private Map<String, String> exits; // Same "roomId:direction" -> roomId form as Initialize
+    private List<ItemDef> offstage;    // Items located "nowhere"
+    private List<InteractionRules.RuleDef> rules;
+
+    // Location of items that are not in the world until a rule brings them in
+    public static final String NOWHERE = "nowhere";
+
+    public WorldDefinition() {
+        this.rooms = new LinkedHashMap<>();
+        this.items = new LinkedHashMap<>();
+        this.exits = new LinkedHashMap<>();
+        this.offstage = new ArrayList<>();
+        this.rules = new ArrayList<>();
+    }
+
+    public static WorldDefinition parse(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader, file.toString());
+        }
+    }
+
+    public static WorldDefinition parse(BufferedReader reader, String sourceName) throws IOException {
+        WorldDefinition world = new WorldDefinition();
+        List<String[]> itemLines = new ArrayList<>(); // Added after all lines are read, locations may come later
+        List<String> lockedItems = new ArrayList<>();
+        Map<InteractionRules.RuleDef, String> ruleLines = new LinkedHashMap<>(); // Rule -> where it was defined
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\|", -1);
+            String[] head = fields[0].trim().split("\\s+");
+            String where = sourceName + ":" + lineNumber;
+            switch (head[0]) {
+                case "start":
+                    expect(head.length == 2 && fields.length == 1, where, "start <room>");
+                    world.startRoom = head[1];
+                    break;
+                case "room":
+                    expect(head.length == 2 && fields.length == 2, where, "room <id> | <description>");
+                    expect(!world.rooms.containsKey(head[1]), where, "a new room id, not duplicate " + head[1]);
+                    world.addRoom(head[1], fields[1].trim());
+                    break;
+                case "exit":
+                    expect(head.length == 4 && fields.length == 1, where, "exit <room> <direction> <room>");
+                    expect(Direction.fromWord(head[2]) != null, where, "a direction such as north or up");
+                    world.addExit(head[1], head[2], head[3]);
+                    break;
+                case "item":
+                    expect(head.length == 3 && fields.length >= 3 && fields.length <= 4, where,
+                           "item <id> <location> | <name> | <description> [| <alias>, <alias>...]");
+                    itemLines.add(new String[] { head[1], head[2], fields[1].trim(), fields[2].trim(),
+                                                 fields.length == 4 ? fields[3] : "", where });
+                    break;
+                case "locked":
+                    expect(head.length == 2 && fields.length == 1, where, "locked <item>");
+                    lockedItems.add(head[1]);
+                    break;
+                case "rule":
+                    try {
+                        ruleLines.put(InteractionRules.parse(line.substring("rule".length())), where);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(where + ": " + e.getMessage());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(where + ": unknown definition '" + head[0] + "'");
+            }
+        }
+
+        // Items may be placed in rooms or containers defined further down the file,
+        // so keep adding the ones whose location exists until nothing changes
+        List<String[]> pending = itemLines;
+        while (!pending.isEmpty()) {
+            List<String[]> waiting = new ArrayList<>();
+            for (String[] spec : pending) {
+                expect(!world.items.containsKey(spec[0]), spec[5], "a new item id, not duplicate " + spec[0]);
+                if (world.rooms.containsKey(spec[1]) || world.items.containsKey(spec[1]) || spec[1].equals(NOWHERE)) {
+                    List<String> aliases = new ArrayList<>();
+                    for (String alias : spec[4].split(",")) {
+                        if (!alias.isBlank()) {
+                            aliases.add(alias.trim());
+                        }
+                    }
+                    world.addItem(spec[0], spec[1], spec[2], spec[3], aliases);
+                } else {
+                    waiting.add(spec);
+                }
+            }
+            if (waiting.size() == pending.size()) {
+                String[] spec = waiting.get(0);
+                throw new IllegalArgumentException(spec[5] + ": unknown location " + spec[1]);
+            }
+            pending = waiting;
+        }
+        for (String key : lockedItems) {
+            ItemDef item = world.items.get(key);
+            if (item == null) {
+                throw new IllegalArgumentException(sourceName + ": locked item " + key + " is not defined");
+            }
+            item.locked = true;
+        }
+        for (Map.Entry<InteractionRules.RuleDef, String> rule : ruleLines.entrySet()) {
+            InteractionRules.RuleDef def = rule.getKey();
+            for (String key : new String[] { def.item, def.target, def.replacement }) {
+                if (key != null && !world.items.containsKey(key)) {
+                    throw new IllegalArgumentException(rule.getValue() + ": rule refers to unknown item " + key);
+                }
+            }
+            world.addRule(def);
+        }
+        if (world.startRoom == null || !world.rooms.containsKey(world.startRoom)) {
+            throw new IllegalArgumentException(sourceName + ": missing or unknown start room");
+        }
+        return world;
+    }
+
+    public void setStartRoom(String roomKey) {
+        this.startRoom = roomKey;
+    }
+
+    public RoomDef addRoom(String key, String description) {
+        if (key.equals(NOWHERE)) {
+            throw new IllegalArgumentException("'" + NOWHERE + "' is reserved for items that are not placed");
+        }
+        RoomDef room = new RoomDef(key, description);
+        if (rooms.putIfAbsent(key, room) != null) {
+            throw new IllegalArgumentException("Duplicate room " + key);
+        }
+        return room;
+    }
+
+    public void addExit(String fromRoom, String direction, String toRoom) {
+        exits.put(fromRoom + ":" + direction, toRoom);
+    }
+
+    /**
+     * Adds an item to a room, or to a container item, that has already been added,
+     * or NOWHERE.
+     */
+    public ItemDef addItem(String key, String location, String name, String description, List<String> aliases) {
+        RoomDef room = rooms.get(location);
+        ItemDef container = items.get(location);
+        if (room == null && container == null && !location.equals(NOWHERE)) {
+            throw new IllegalArgumentException("Unknown location " + location + " for item " + key);
+        }
+        ItemDef item = new ItemDef(key, name, description, aliases);
+        if (items.putIfAbsent(key, item) != null) {
+            throw new IllegalArgumentException("Duplicate item " + key);
+        }
+        if (room != null) {
+            room.items.add(item);
+        } else if (container != null) {
+            container.contents.add(item);
+        } else {
+            offstage.add(item);
+        }
+        return item;
+    }
+
+    // Item keys are checked when the world is compiled
+    public void addRule(InteractionRules.RuleDef rule) {
+        rules.add(rule);
+    }
+
+    private static void expect(boolean ok, String where, String usage) {
+        if (!ok) {
+            throw new IllegalArgumentException(where + ": expected " + usage);
+        }
+    }
+
+    public String getStartRoom() {
+        return startRoom;
+    }
+
+    public Map<String, RoomDef> getRooms() {
+        return rooms;
+    }
+
+    public Map<String, ItemDef> getItems() {
+        return items;
+    }
+
+    public Map<String, String> getExits() {
+        return exits;
+    }
+
+    public List<ItemDef> getOffstageItems() {
+        return offstage;
+    }
+
+    public List<InteractionRules.RuleDef> getRules() {
+        return rules;
+    }
+}
@@ -0,0 +1,225 @@
+package TextAdventureParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of a compiled world image (see WorldCompiler).
+ * The file is memory-mapped and records are read straight from the mapping,
+ * so opening an image costs the same whatever the size of the world; Room and
+ * Item objects are only created for the rooms a game actually visits.
+ * <p>
+ * Layout (big-endian ints; offsets are from the start of the file):
+ * <pre>
+ * header   magic, version, roomCount, exitCount, itemCount, refCount, stringCount, wordCount,
+ *          startRoom, the offset of each section below, then ruleCount and the rules offset
+ * rowStart   int[roomCount + 1]  exits of room r are [rowStart[r], rowStart[r + 1])
+ * exitDir    byte[exitCount]     Direction ordinal
+ * exitTarget int[exitCount]      destination room id, or ExitGraph.MISSING_ROOM
+ * rooms      {key, description, firstRef, refCount} per room (string ids / ref range of item ids)
+ * items      {name, description, firstAlias, aliasCount, firstChild, childCount, flags} per item
+ * refs       int[refCount]       item ids and alias string ids referenced by rooms and items
+ * strings    int[stringCount + 1] byte offsets into the UTF-8 string data that follows
+ * words      int[wordCount]      string ids of every alias word, for the tokenizer vocabulary
+ * rules      {verb, item, preposition or -1, target, conditions, effects, replacement or -1, message}
+ *            per rule (string ids / item ids, see InteractionRules)
+ * </pre>
+ * Mapped buffers are limited to 2 GB, which is plenty for the compact encoding.
+ */
+public class WorldImage {
+    public static final int MAGIC = 0x54415749; // "TAWI"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 80;
+    public static final int ROOM_RECORD_SIZE = 16;
+    public static final int ITEM_RECORD_SIZE = 28;
+    public static final int RULE_RECORD_SIZE = 32;
+    public static final int FLAG_LOCKED = 1;
+
+    private final ByteBuffer buffer; // Only absolute reads are used, so it can be shared between threads
+    private final int roomCount;
+    private final int exitCount;
+    private final int itemCount;
+    private final int wordCount;
+    private final int startRoom;
+    private final int rowStartOffset;
+    private final int exitDirectionOffset;
+    private final int exitTargetOffset;
+    private final int roomsOffset;
+    private final int itemsOffset;
+    private final int refsOffset;
+    private final int stringOffsetsOffset;
+    private final int stringDataOffset;
+    private final int wordsOffset;
+    private final int ruleCount;
+    private final int rulesOffset;
+
+    public static WorldImage open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new WorldImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public WorldImage(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a world image");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported world image version " + version);
+        }
+        roomCount = buffer.getInt(8);
+        exitCount = buffer.getInt(12);
+        itemCount = buffer.getInt(16);
+        wordCount = buffer.getInt(28);
+        startRoom = buffer.getInt(32);
+        rowStartOffset = buffer.getInt(36);
+        exitDirectionOffset = buffer.getInt(40);
+        exitTargetOffset = buffer.getInt(44);
+        roomsOffset = buffer.getInt(48);
+        itemsOffset = buffer.getInt(52);
+        refsOffset = buffer.getInt(56);
+        stringOffsetsOffset = buffer.getInt(60);
+        stringDataOffset = buffer.getInt(64);
+        wordsOffset = buffer.getInt(68);
+        ruleCount = buffer.getInt(72);
+        rulesOffset = buffer.getInt(76);
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int getExitCount() {
+        return exitCount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    public int getStartRoom() {
+        return startRoom;
+    }
+
+    // --- Exit graph sections, copied in bulk into the ExitGraph arrays ---
+
+    public int[] readRowStarts() {
+        return readInts(rowStartOffset, roomCount + 1);
+    }
+
+    public byte[] readExitDirections() {
+        byte[] directions = new byte[exitCount];
+        buffer.get(exitDirectionOffset, directions);
+        return directions;
+    }
+
+    public int[] readExitTargets() {
+        return readInts(exitTargetOffset, exitCount);
+    }
+
+    // --- Records ---
+
+    public String getRoomKey(int roomId) {
+        return getString(buffer.getInt(roomsOffset + roomId * ROOM_RECORD_SIZE));
+    }
+
+    public String getRoomDescription(int roomId) {
+        return getString(buffer.getInt(roomsOffset + roomId * ROOM_RECORD_SIZE + 4));
+    }
+
+    public String getWord(int index) {
+        return getString(buffer.getInt(wordsOffset + index * 4));
+    }
+
+    /**
+     * Creates a Room with all its items from the image record. The room's id is set;
+     * callers sharing it between sessions should freeze it.
+     */
+    public Room loadRoom(int roomId) {
+        Room room = new Room(getRoomDescription(roomId));
+        room.setId(roomId);
+        for (Item item : loadRoomItems(roomId)) {
+            room.addItem(item);
+        }
+        return room;
+    }
+
+    // The items lying in a room, without building the Room and its alias index
+    public List<Item> loadRoomItems(int roomId) {
+        int record = roomsOffset + roomId * ROOM_RECORD_SIZE;
+        int firstRef = buffer.getInt(record + 8);
+        int refCount = buffer.getInt(record + 12);
+        List<Item> items = new ArrayList<>(refCount);
+        for (int i = 0; i < refCount; i++) {
+            items.add(loadItem(getRef(firstRef + i)));
+        }
+        return items;
+    }
+
+    public Item loadItem(int itemId) {
+        int record = itemsOffset + itemId * ITEM_RECORD_SIZE;
+        int firstAlias = buffer.getInt(record + 8);
+        String[] aliases = new String[buffer.getInt(record + 12)];
+        for (int i = 0; i < aliases.length; i++) {
+            aliases[i] = getString(getRef(firstAlias + i));
+        }
+        Item item = new Item(getString(buffer.getInt(record)), getString(buffer.getInt(record + 4)), aliases);
+        item.setId(itemId);
+
+        int firstChild = buffer.getInt(record + 16);
+        int childCount = buffer.getInt(record + 20);
+        for (int i = 0; i < childCount; i++) {
+            item.addItem(loadItem(getRef(firstChild + i)));
+        }
+        item.setLocked((buffer.getInt(record + 24) & FLAG_LOCKED) != 0);
+        return item;
+    }
+
+    // All rules, indexed for lookups; they are few next to rooms and items, so they are read up front
+    public InteractionRules loadRules(Vocabulary vocabulary) {
+        InteractionRules rules = new InteractionRules(vocabulary);
+        for (int i = 0; i < ruleCount; i++) {
+            int record = rulesOffset + i * RULE_RECORD_SIZE;
+            int preposition = buffer.getInt(record + 8);
+            rules.add(new InteractionRules.Rule(getString(buffer.getInt(record)), buffer.getInt(record + 4),
+                    preposition >= 0 ? getString(preposition) : null, buffer.getInt(record + 12),
+                    buffer.getInt(record + 16), buffer.getInt(record + 20), buffer.getInt(record + 24),
+                    getString(buffer.getInt(record + 28))));
+        }
+        return rules;
+    }
+
+    private int getRef(int index) {
+        return buffer.getInt(refsOffset + index * 4);
+    }
+
+    private String getString(int stringId) {
+        int start = buffer.getInt(stringOffsetsOffset + stringId * 4);
+        int end = buffer.getInt(stringOffsetsOffset + stringId * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringDataOffset + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int[] readInts(int offset, int count) {
+        int[] values = new int[count];
+        buffer.slice(offset, count * 4).asIntBuffer().get(values);
+        return values;
+    }
+}
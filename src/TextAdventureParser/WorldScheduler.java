@@ -0,0 +1,241 @@
+package TextAdventureParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runs timed world events (a lantern burning out, a door swinging shut) for every
+ * session on a world. Timers wait in one TimingWheel; a platform thread advances it
+ * once per tick and posts each expired timer to its session, which runs the event
+ * under the same lock as its commands (see Game.schedule), so an event never sees
+ * a command half done. The ticker only moves timers, so a slow session can't hold
+ * up the others' events.
+ * <p>
+ * Ticks are counted from start(), and a tick that runs late is not skipped: the ticker
+ * catches up one tick at a time, recording how late each one ran.
+ */
+public class WorldScheduler implements WorldSchedulerMXBean {
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    private final TimingWheel wheel; // Guarded by its own monitor
+    private final long tickNanos;
+    private final LatencyHistogram tickLag;
+    private final LatencyHistogram eventDelay;
+    private final LongAdder scheduled;
+    private final LongAdder cancelled;
+    private final LongAdder fired;
+    private final LongAdder dropped;
+    private final LongAdder lateTicks;
+    private Thread ticker;
+
+    public WorldScheduler() {
+        this(DEFAULT_TICK_MILLIS);
+    }
+
+    public WorldScheduler(long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("A tick must last at least a millisecond");
+        }
+        this.wheel = new TimingWheel();
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.tickLag = new LatencyHistogram();
+        this.eventDelay = new LatencyHistogram();
+        this.scheduled = new LongAdder();
+        this.cancelled = new LongAdder();
+        this.fired = new LongAdder();
+        this.dropped = new LongAdder();
+        this.lateTicks = new LongAdder();
+    }
+
+    // Starts ticking on a daemon thread
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Thread.ofPlatform().name("world-ticks").daemon().start(this::run);
+        }
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Runs an event in a session after a number of ticks.
+     * @param delayTicks At least one; the event runs on the first tick at or after it.
+     * @return The timer, for cancel().
+     */
+    public TimingWheel.Timer schedule(Game session, long delayTicks, Consumer<Game> event) {
+        if (delayTicks < 1) {
+            throw new IllegalArgumentException("Events run one tick from now at the earliest");
+        }
+        TimingWheel.Timer timer;
+        synchronized (wheel) {
+            timer = new TimingWheel.Timer(session, event, wheel.getTick() + delayTicks);
+            wheel.add(timer);
+        }
+        scheduled.increment();
+        return timer;
+    }
+
+    /**
+     * @return False if the event has already run or was cancelled before.
+     */
+    public boolean cancel(TimingWheel.Timer timer) {
+        boolean stopped;
+        synchronized (wheel) {
+            stopped = wheel.cancel(timer);
+        }
+        if (stopped) {
+            cancelled.increment();
+        }
+        return stopped;
+    }
+
+    // Called by the session just before it runs an expired timer's event
+    boolean claim(TimingWheel.Timer timer) {
+        boolean claimed;
+        synchronized (wheel) {
+            claimed = wheel.claim(timer);
+        }
+        if (claimed) {
+            fired.increment();
+            eventDelay.record(System.nanoTime() - timer.expiredNanos);
+        }
+        return claimed;
+    }
+
+    // Called by the session for timers that expired after it ended
+    void drop(TimingWheel.Timer timer) {
+        synchronized (wheel) {
+            if (!wheel.claim(timer)) {
+                return;
+            }
+        }
+        dropped.increment();
+    }
+
+    private void run() {
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        long due = System.nanoTime() + tickNanos;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                long now = System.nanoTime();
+                long lag = Math.max(0, now - due);
+                tickLag.record(lag);
+                if (lag >= tickNanos) {
+                    lateTicks.increment();
+                }
+                synchronized (wheel) {
+                    wheel.advance(expired);
+                }
+                for (TimingWheel.Timer timer : expired) {
+                    timer.expiredNanos = now;
+                    timer.getSession().post(timer);
+                }
+                expired.clear();
+                due += tickNanos;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long getTick() {
+        synchronized (wheel) {
+            return wheel.getTick();
+        }
+    }
+
+    @Override
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    @Override
+    public int getPendingTimers() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @Override
+    public long getScheduledTimers() {
+        return scheduled.sum();
+    }
+
+    @Override
+    public long getCancelledTimers() {
+        return cancelled.sum();
+    }
+
+    @Override
+    public long getFiredEvents() {
+        return fired.sum();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getLateTicks() {
+        return lateTicks.sum();
+    }
+
+    @Override
+    public double getMeanTickLagMicros() {
+        return tickLag.getMeanNanos() / 1e3;
+    }
+
+    @Override
+    public double getP99TickLagMicros() {
+        return tickLag.getPercentileNanos(99) / 1e3;
+    }
+
+    @Override
+    public double getMaxTickLagMicros() {
+        return tickLag.getMaxNanos() / 1e3;
+    }
+
+    @Override
+    public double getP99EventDelayMicros() {
+        return eventDelay.getPercentileNanos(99) / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        tickLag.reset();
+        eventDelay.reset();
+        scheduled.reset();
+        cancelled.reset();
+        fired.reset();
+        dropped.reset();
+        lateTicks.reset();
+    }
+
+    public void registerMBean(String world) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("TextAdventureParser:type=WorldScheduler,world=" + ObjectName.quote(world)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ticks %d, timers %d pending / %d fired, tick lag p99 %.0f us (%d late)",
+                getTick(), getPendingTimers(), getFiredEvents(), getP99TickLagMicros(), getLateTicks());
+    }
+}
@@ -0,0 +1,36 @@
+package TextAdventureParser;
+
+/**
+ * JMX view of a WorldScheduler: timers, events and how far the ticks run behind.
+ * Registered as TextAdventureParser:type=WorldScheduler,world=&lt;name&gt;.
+ */
+public interface WorldSchedulerMXBean {
+    long getTick();
+
+    long getTickMillis();
+
+    int getPendingTimers();
+
+    long getScheduledTimers();
+
+    long getCancelledTimers();
+
+    long getFiredEvents();
+
+    // Expired for a session that had already ended
+    long getDroppedEvents();
+
+    // Ticks that ran a whole tick or more after they were due
+    long getLateTicks();
+
+    double getMeanTickLagMicros();
+
+    double getP99TickLagMicros();
+
+    double getMaxTickLagMicros();
+
+    // From expiring on the ticker to running in the session
+    double getP99EventDelayMicros();
+
+    void reset();
+}
@@ -0,0 +1,182 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One session's changes on top of a shared WorldTemplate.
+ * Rooms are copied the first time the session changes their contents; item state
+ * (lock flag, container contents) is kept in a small per-item overlay so that the
+ * Item objects themselves stay shared. Untouched rooms and items cost nothing.
+ * <p>
+ * Template rooms of paged worlds may be evicted and reloaded as new objects, so item
+ * state must only be changed for items the session holds through its own room copy
+ * (mutableRoom) or the player's inventory.
+ * <p>
+ * A SharedWorld keeps one WorldState for all its sessions. Its maps are then concurrent,
+ * so two sessions copying the same room get the same copy; the rooms and item state in
+ * them are guarded by the SharedWorld's lock stripes. Nothing is marked dirty, since
+ * shared worlds are never saved.
+ */
+public class WorldState {
+    private final WorldTemplate template;
+    private Map<Integer, Room> changedRooms; // Session copies by room id
+    private Map<Item, ItemState> changedItems;
+    private Set<Integer> dirtyRooms; // Changed since the last save, see SessionSaver
+    private Set<Item> dirtyItems;
+    private final boolean trackDirty; // False in a shared world
+
+    // The parts of an Item a session is allowed to change
+    private static class ItemState {
+        boolean locked;
+        List<Item> contents;
+
+        ItemState(Item template) {
+            this.locked = template.isLocked();
+            this.contents = new ArrayList<>(template.getInventory());
+        }
+    }
+
+    public WorldState(WorldTemplate template) {
+        this(template, false);
+    }
+
+    /**
+     * @param shared True if sessions on several threads will use it, see SharedWorld.
+     */
+    public WorldState(WorldTemplate template, boolean shared) {
+        this.template = template;
+        this.trackDirty = !shared;
+        if (shared) {
+            this.changedRooms = new ConcurrentHashMap<>();
+            this.changedItems = new ConcurrentHashMap<>();
+            this.dirtyRooms = Collections.emptySet();
+            this.dirtyItems = Collections.emptySet();
+        } else {
+            this.changedRooms = new HashMap<>();
+            this.changedItems = new HashMap<>();
+            this.dirtyRooms = new HashSet<>();
+            this.dirtyItems = new HashSet<>();
+        }
+    }
+
+    public WorldTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return The session's view of a room: its own copy if it changed it, else the shared template room.
+     */
+    public Room getRoom(int roomId) {
+        Room changed = changedRooms.get(roomId);
+        return changed != null ? changed : template.getExitGraph().getRoom(roomId);
+    }
+
+    /**
+     * Returns a room this session may modify, copying the template room on first use.
+     * Callers holding the old reference (e.g. the player's current room) must switch to the result.
+     */
+    public Room mutableRoom(Room room) {
+        if (trackDirty) {
+            dirtyRooms.add(room.getId()); // Every change to a room's contents goes through here first
+        }
+        if (!room.isFrozen()) {
+            return room; // Already the session's copy
+        }
+        return changedRooms.computeIfAbsent(room.getId(), id -> new Room(room));
+    }
+
+    public boolean isLocked(Item item) {
+        ItemState state = changedItems.get(item);
+        return state != null ? state.locked : item.isLocked();
+    }
+
+    public void setLocked(Item item, boolean locked) {
+        stateFor(item).locked = locked;
+    }
+
+    public List<Item> getContents(Item container) {
+        ItemState state = changedItems.get(container);
+        return state != null ? Collections.unmodifiableList(state.contents) : container.getInventory();
+    }
+
+    public void addToContainer(Item container, Item item) {
+        stateFor(container).contents.add(item);
+    }
+
+    public void removeFromContainer(Item container, Item item) {
+        stateFor(container).contents.remove(item);
+    }
+
+    public int getChangedRoomCount() {
+        return changedRooms.size();
+    }
+
+    public int getChangedItemCount() {
+        return changedItems.size();
+    }
+
+    // Every room this session has its own copy of
+    public Collection<Room> getChangedRooms() {
+        return Collections.unmodifiableCollection(changedRooms.values());
+    }
+
+    // Every item whose lock flag or contents this session has changed
+    public Set<Item> getChangedItems() {
+        return Collections.unmodifiableSet(changedItems.keySet());
+    }
+
+    public Set<Integer> getDirtyRooms() {
+        return Collections.unmodifiableSet(dirtyRooms);
+    }
+
+    public Set<Item> getDirtyItems() {
+        return Collections.unmodifiableSet(dirtyItems);
+    }
+
+    public boolean isDirty() {
+        return !dirtyRooms.isEmpty() || !dirtyItems.isEmpty();
+    }
+
+    // Called once the changes have been handed to a save
+    public void clearDirty() {
+        dirtyRooms.clear();
+        dirtyItems.clear();
+    }
+
+    /**
+     * Replaces the session's copy of a room with one holding exactly the given items.
+     * Used when restoring a save; callers holding the old room must fetch it again.
+     */
+    public void restoreRoom(int roomId, List<Item> items) {
+        Room room = new Room(template.getExitGraph().getRoom(roomId));
+        for (Item item : new ArrayList<>(room.getItems())) {
+            room.removeItem(item);
+        }
+        for (Item item : items) {
+            room.addItem(item);
+        }
+        changedRooms.put(roomId, room);
+    }
+
+    // Sets an item's session state outright, for restoring a save
+    public void restoreItem(Item item, boolean locked, List<Item> contents) {
+        ItemState state = stateFor(item);
+        state.locked = locked;
+        state.contents = new ArrayList<>(contents);
+    }
+
+    private ItemState stateFor(Item item) {
+        if (trackDirty) {
+            dirtyItems.add(item);
+        }
+        return changedItems.computeIfAbsent(item, ItemState::new);
+    }
+}
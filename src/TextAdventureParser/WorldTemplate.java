@@ -0,0 +1,268 @@
+package TextAdventureParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The world as it is at the start of a game, built once and shared by every session.
+ * After construction all rooms and items are frozen; sessions record their own
+ * changes in a WorldState overlay instead of touching the template.
+ */
+public class WorldTemplate {
+    private final ExitGraph exitGraph;
+    private final RoutePlanner routes; // Shortest routes for "go to", cached across sessions
+    private final Vocabulary vocabulary;
+    private final CompiledGrammar grammar;
+    private final Map<String, String> primaryCommands;
+    private final int startRoomId;
+    private final RegionCache regionCache; // Only for worlds paged in from an image
+    private final Item[] items;             // Item by id when the whole world is in memory
+    private final WorldImage image;         // Otherwise items are loaded from here
+    private volatile ParseCache parseCache; // Input lines already parsed by any session
+    private final CommandMetrics metrics; // Counters for the commands of every session
+    private final InteractionRules rules; // What using one item on another does
+    private volatile SpellingIndex verbSpelling;  // Corrects unknown verbs
+    private volatile SpellingIndex aliasSpelling; // Corrects item words that match nothing in reach
+    private volatile boolean spellingCorrection;
+
+    // Lazily built default world, shared by every Game that doesn't bring its own
+    private static class DefaultHolder {
+        static final WorldTemplate INSTANCE = build();
+    }
+
+    public static WorldTemplate getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Builds and freezes a template from the hard-coded Initialize tables.
+     */
+    public static WorldTemplate build() {
+        CommandGrammar grammar = new CommandGrammar();
+        Map<String, String> primaryCommands = new HashMap<>();
+        Map<String, Room> worldMap = new HashMap<>();
+        Map<String, String> exitsMap = new HashMap<>();
+        Map<String, Item> itemMap = new HashMap<>();
+
+        Initialize.initializeCommands(grammar, primaryCommands);
+        String startRoomKey = Initialize.initializeRoomsAndItems(worldMap, exitsMap, itemMap);
+
+        ExitGraph exitGraph = ExitGraph.compile(worldMap, exitsMap);
+        Vocabulary vocabulary = commandVocabulary(grammar);
+        List<Item> items = new ArrayList<>();
+        for (int id = 0; id < exitGraph.getRoomCount(); id++) {
+            Room room = exitGraph.getRoom(id);
+            numberItems(items, room.getItems()); // In room id order, so ids are stable between runs
+            room.freeze();
+        }
+        InteractionRules rules = new InteractionRules(vocabulary);
+        Initialize.initializeRules(rules, itemMap);
+        List<String> aliasWords = new ArrayList<>();
+        for (Item item : items) {
+            for (String alias : item.getAliases()) {
+                aliasWords.addAll(Arrays.asList(alias.split(" ")));
+            }
+        }
+        return new WorldTemplate(exitGraph, vocabulary, grammar.compile(), primaryCommands, worldMap.get(startRoomKey).getId(),
+                null, items.toArray(new Item[0]), null, rules, spellingIndex(vocabulary, grammar.getWords()),
+                spellingIndex(vocabulary, aliasWords));
+    }
+
+    public static WorldTemplate fromImage(WorldImage image) {
+        return fromImage(image, RegionCache.DEFAULT_REGION_SIZE, RegionCache.DEFAULT_MAX_REGIONS);
+    }
+
+    /**
+     * Builds a template on top of a memory-mapped world image. Only the exit rows are
+     * copied out of the image; rooms and items are paged in region by region as sessions
+     * enter them, and at most maxRegions regions stay in heap.
+     */
+    public static WorldTemplate fromImage(WorldImage image, int regionSize, int maxRegions) {
+        CommandGrammar grammar = new CommandGrammar();
+        Map<String, String> primaryCommands = new HashMap<>();
+        Initialize.initializeCommands(grammar, primaryCommands);
+
+        RegionCache regionCache = new RegionCache(roomId -> {
+            Room room = image.loadRoom(roomId);
+            room.freeze();
+            return room;
+        }, image.getRoomCount(), regionSize, maxRegions);
+        ExitGraph exitGraph = ExitGraph.fromRows(image.readRowStarts(), image.readExitDirections(),
+                image.readExitTargets(), regionCache::getRoom, image::getRoomKey);
+        Vocabulary vocabulary = commandVocabulary(grammar);
+        List<String> aliasWords = new ArrayList<>(image.getWordCount());
+        for (int i = 0; i < image.getWordCount(); i++) {
+            aliasWords.add(image.getWord(i));
+        }
+        return new WorldTemplate(exitGraph, vocabulary, grammar.compile(), primaryCommands, image.getStartRoom(),
+                regionCache, null, image, image.loadRules(vocabulary), spellingIndex(vocabulary, grammar.getWords()),
+                spellingIndex(vocabulary, aliasWords));
+    }
+
+    private WorldTemplate(ExitGraph exitGraph, Vocabulary vocabulary,
+                          CompiledGrammar grammar,
+                          Map<String, String> primaryCommands, int startRoomId, RegionCache regionCache,
+                          Item[] items, WorldImage image, InteractionRules rules,
+                          SpellingIndex verbSpelling, SpellingIndex aliasSpelling) {
+        this.exitGraph = exitGraph;
+        this.routes = new RoutePlanner(exitGraph);
+        this.vocabulary = vocabulary;
+        this.grammar = grammar;
+        this.primaryCommands = Collections.unmodifiableMap(primaryCommands);
+        this.startRoomId = startRoomId;
+        this.regionCache = regionCache;
+        this.items = items;
+        this.image = image;
+        this.parseCache = new ParseCache();
+        this.metrics = new CommandMetrics(grammar);
+        this.rules = rules;
+        this.verbSpelling = verbSpelling;
+        this.aliasSpelling = aliasSpelling;
+        this.spellingCorrection = true;
+    }
+
+    public ExitGraph getExitGraph() {
+        return exitGraph;
+    }
+
+    public RoutePlanner getRoutes() {
+        return routes;
+    }
+
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    public CompiledGrammar getGrammar() {
+        return grammar;
+    }
+
+    public Map<String, String> getPrimaryCommands() {
+        return primaryCommands;
+    }
+
+    public int getStartRoomId() {
+        return startRoomId;
+    }
+
+    public int getItemCount() {
+        return items != null ? items.length : image.getItemCount();
+    }
+
+    /**
+     * The template item with the given id. Items of paged worlds are loaded afresh on every
+     * call, so callers that need one object per id (e.g. when restoring a save) must keep their own map.
+     */
+    public Item getItem(int itemId) {
+        if (items != null) {
+            return items[itemId];
+        }
+        Item item = image.loadItem(itemId);
+        item.freeze();
+        return item;
+    }
+
+    /**
+     * The items lying in a template room. Paged worlds read them straight from the image,
+     * bypassing the region cache, so a pass over every room doesn't evict the ones in play.
+     */
+    public List<Item> readRoomItems(int roomId) {
+        return image != null ? image.loadRoomItems(roomId) : exitGraph.getRoom(roomId).getItems();
+    }
+
+    // Null when the whole world is in memory
+    public RegionCache getRegionCache() {
+        return regionCache;
+    }
+
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    public InteractionRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Replaces the default parse cache, e.g. to size it for a server.
+     * Sessions pick the cache up when they start, so call this before creating any.
+     */
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    // Null when spelling correction is turned off
+    public SpellingIndex getVerbSpelling() {
+        return spellingCorrection ? verbSpelling : null;
+    }
+
+    public SpellingIndex getAliasSpelling() {
+        return spellingCorrection ? aliasSpelling : null;
+    }
+
+    /**
+     * Sets how far a misspelled verb or item word may be from the word it is corrected to;
+     * 0 turns correction off. Correction only runs once an exact match has failed.
+     * Sessions pick the setting up when they start, so call this before creating any.
+     */
+    public void setSpellingDistance(int maxDistance) {
+        spellingCorrection = maxDistance > 0;
+        if (spellingCorrection && maxDistance != verbSpelling.getMaxDistance()) {
+            verbSpelling = verbSpelling.withMaxDistance(maxDistance);
+            aliasSpelling = aliasSpelling.withMaxDistance(maxDistance);
+        }
+    }
+
+    /**
+     * Called when a player enters a room, so paged worlds can load the regions next door early.
+     */
+    public void roomEntered(int roomId) {
+        if (regionCache != null) {
+            regionCache.prefetchNeighbours(exitGraph, roomId);
+        }
+    }
+
+    /**
+     * Stops the template's background work (prefetching regions of a paged world).
+     * Sessions still running can go on loading rooms as they need them.
+     */
+    public void close() {
+        if (regionCache != null) {
+            regionCache.close();
+        }
+    }
+
+    // Verbs, directions, noise words, prepositions and conjunctions; items intern their own alias words
+    private static Vocabulary commandVocabulary(CommandGrammar grammar) {
+        Vocabulary words = Vocabulary.global();
+        grammar.getWords().forEach(words::intern);
+        for (Direction direction : Direction.values()) {
+            words.intern(direction.getWord());
+        }
+        CommandTokenizer.NOISE_WORDS.forEach(words::intern);
+        CommandTokenizer.PREPOSITIONS.forEach(words::intern);
+        CommandTokenizer.CONJUNCTIONS.forEach(words::intern);
+        return words;
+    }
+
+    private static SpellingIndex spellingIndex(Vocabulary vocabulary, List<String> words) {
+        return SpellingIndex.build(vocabulary, words, SpellingIndex.DEFAULT_MAX_DISTANCE);
+    }
+
+    // Depth-first, so a container's contents follow it
+    private static void numberItems(List<Item> numbered, List<Item> items) {
+        for (Item item : items) {
+            item.setId(numbered.size());
+            numbered.add(item);
+            numberItems(numbered, item.getInventory());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package TextAdventureParser;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Checks a world for data that would only show up as odd behaviour in play:
+ * exits into rooms that don't exist, rooms that can't be reached from the start
+ * room, and item aliases that also match another item in the same room (so typing
+ * the alias gets "Which one did you mean?"). Collisions are found with the same test
+ * the game's AliasIndex makes, so they are exactly the ones a player hits; it runs on the
+ * alias strings, so checking a whole image doesn't intern its every alias fragment.
+ * <p>
+ * Rooms are checked in parallel on a fork/join pool, a range of rooms per task;
+ * reachability is a breadth-first search that expands each level in parallel.
+ * Paged worlds are read straight from their image, not through the region cache.
+ * <p>
+ * Usage: WorldValidator [world image], to validate an image (or the built-in world).
+ */
+public class WorldValidator {
+    private static final int ROOMS_PER_TASK = 2048;
+    private static final int FRONTIER_PER_TASK = 4096;
+
+    private final WorldTemplate template;
+    private final ExitGraph exits;
+    private final ForkJoinPool pool;
+    private final int maxListed;
+
+    public static void main(String[] args) throws Exception {
+        WorldTemplate template = args.length > 0
+                ? WorldTemplate.fromImage(WorldImage.open(Path.of(args[0])))
+                : WorldTemplate.getDefault();
+        ValidationReport report = validate(template);
+        System.out.println(report.toString(ValidationReport.DEFAULT_MAX_LISTED));
+        System.exit(report.hasErrors() ? 1 : 0);
+    }
+
+    // Validates on the common fork/join pool
+    public static ValidationReport validate(WorldTemplate template) {
+        return new WorldValidator(template, ForkJoinPool.commonPool(), ValidationReport.DEFAULT_MAX_LISTED).validate();
+    }
+
+    /**
+     * Validates a world that was just loaded and reports any problems on stderr.
+     * The world is still playable: broken exits only fail when someone takes them.
+     */
+    public static ValidationReport check(WorldTemplate template) {
+        ValidationReport report = validate(template);
+        if (!report.isClean()) {
+            System.err.println(report);
+        }
+        return report;
+    }
+
+    public WorldValidator(WorldTemplate template, ForkJoinPool pool, int maxListed) {
+        this.template = template;
+        this.exits = template.getExitGraph();
+        this.pool = pool;
+        this.maxListed = maxListed;
+    }
+
+    public ValidationReport validate() {
+        long start = System.nanoTime();
+        int roomCount = exits.getRoomCount();
+        AtomicLongArray reachable = pool.invoke(new Reachability(template.getStartRoomId()));
+        ValidationReport report = pool.invoke(new RoomCheck(0, roomCount, reachable));
+        for (String key : exits.getInvalidExits()) {
+            int colon = key.indexOf(':');
+            report.add(ValidationReport.Kind.INVALID_EXIT, -1, colon < 0 ? key : key.substring(0, colon),
+                    "exit " + key + " names an unknown room or direction and was left out");
+        }
+        int reachableRooms = 0;
+        for (int i = 0; i < reachable.length(); i++) {
+            reachableRooms += Long.bitCount(reachable.get(i));
+        }
+        report.setTotals(roomCount, reachableRooms, System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Checks rooms [from, to): splits the range until it is small, then checks each room.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private class RoomCheck extends RecursiveTask<ValidationReport> {
+        private final int from;
+        private final int to;
+        private final AtomicLongArray reachable;
+
+        RoomCheck(int from, int to, AtomicLongArray reachable) {
+            this.from = from;
+            this.to = to;
+            this.reachable = reachable;
+        }
+
+        @Override
+        protected ValidationReport compute() {
+            if (to - from > ROOMS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                RoomCheck right = new RoomCheck(middle, to, reachable);
+                right.fork();
+                ValidationReport report = new RoomCheck(from, middle, reachable).compute();
+                report.merge(right.join()); // Left first, so problems stay in room order
+                return report;
+            }
+            ValidationReport report = new ValidationReport(maxListed);
+            for (int roomId = from; roomId < to; roomId++) {
+                checkRoom(roomId, reachable, report);
+            }
+            return report;
+        }
+    }
+
+    private void checkRoom(int roomId, AtomicLongArray reachable, ValidationReport report) {
+        for (int e = exits.firstExit(roomId); e < exits.endExit(roomId); e++) {
+            if (exits.getExitTarget(e) == ExitGraph.MISSING_ROOM) {
+                report.add(ValidationReport.Kind.DANGLING_EXIT, roomId, exits.getRoomKey(roomId),
+                        "exit " + exits.getExitDirection(e).getWord() + " leads to a room that does not exist");
+            }
+        }
+        if ((reachable.get(roomId >>> 6) & (1L << roomId)) == 0) {
+            report.add(ValidationReport.Kind.UNREACHABLE_ROOM, roomId, exits.getRoomKey(roomId),
+                    "no way there from the start room");
+        }
+
+        // Container contents end up in the room when opened, so they count as its items
+        List<Item> items = new ArrayList<>();
+        collectItems(template.readRoomItems(roomId), items);
+        report.itemsChecked(items.size());
+        if (items.size() < 2) {
+            return;
+        }
+        Set<String> reported = new LinkedHashSet<>();
+        List<String> names = new ArrayList<>();
+        for (Item item : items) {
+            for (String alias : item.getAliases()) {
+                String[] words = alias.toLowerCase().split(" +");
+                names.clear();
+                for (Item other : items) {
+                    if (matchesAll(other, words)) {
+                        names.add(other.getName());
+                    }
+                }
+                if (names.size() > 1 && reported.add(alias)) {
+                    report.add(ValidationReport.Kind.ALIAS_COLLISION, roomId, exits.getRoomKey(roomId),
+                            "'" + alias + "' matches " + String.join(", ", names));
+                }
+            }
+        }
+    }
+
+    private static boolean matchesAll(Item item, String[] words) {
+        for (String word : words) {
+            if (!item.aliasContains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void collectItems(List<Item> items, List<Item> into) {
+        for (Item item : items) {
+            into.add(item);
+            collectItems(item.getInventory(), into);
+        }
+    }
+
+    /**
+     * Breadth-first search from the start room, one level at a time. Each level's
+     * frontier is split over tasks; a room is claimed by whichever task sets its bit first.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private class Reachability extends RecursiveTask<AtomicLongArray> {
+        private final int startRoom;
+
+        Reachability(int startRoom) {
+            this.startRoom = startRoom;
+        }
+
+        @Override
+        protected AtomicLongArray compute() {
+            AtomicLongArray visited = new AtomicLongArray((exits.getRoomCount() + 63) >>> 6);
+            if (exits.getRoomCount() == 0) {
+                return visited;
+            }
+            claim(visited, startRoom);
+            int[] frontier = { startRoom };
+            while (frontier.length > 0) {
+                Expand level = new Expand(frontier, 0, frontier.length, visited);
+                level.invoke();
+                frontier = level.next();
+            }
+            return visited;
+        }
+    }
+
+    // Expands frontier[from, to) into the rooms it claimed for the next level
+    @SuppressWarnings("serial") // Never serialized
+    private class Expand extends RecursiveAction {
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+        private final AtomicLongArray visited;
+        private Expand left;
+        private Expand right;
+        private int[] claimed;
+        private int claimedCount;
+
+        Expand(int[] frontier, int from, int to, AtomicLongArray visited) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FRONTIER_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                left = new Expand(frontier, from, middle, visited);
+                right = new Expand(frontier, middle, to, visited);
+                invokeAll(left, right);
+                return;
+            }
+            claimed = new int[Math.max(4, (to - from) * 2)];
+            for (int i = from; i < to; i++) {
+                int room = frontier[i];
+                for (int e = exits.firstExit(room); e < exits.endExit(room); e++) {
+                    int target = exits.getExitTarget(e);
+                    if (target >= 0 && claim(visited, target)) {
+                        if (claimedCount == claimed.length) {
+                            claimed = Arrays.copyOf(claimed, claimedCount * 2);
+                        }
+                        claimed[claimedCount++] = target;
+                    }
+                }
+            }
+        }
+
+        int[] next() {
+            int[] rooms = new int[size()];
+            copyInto(rooms, 0);
+            return rooms;
+        }
+
+        private int size() {
+            return left != null ? left.size() + right.size() : claimedCount;
+        }
+
+        private int copyInto(int[] rooms, int position) {
+            if (left != null) {
+                return right.copyInto(rooms, left.copyInto(rooms, position));
+            }
+            System.arraycopy(claimed, 0, rooms, position, claimedCount);
+            return position + claimedCount;
+        }
+    }
+
+    // Sets the room's bit; true if this call was the one that set it
+    private static boolean claim(AtomicLongArray visited, int room) {
+        int word = room >>> 6;
+        long bit = 1L << room;
+        long current = visited.get(word);
+        while ((current & bit) == 0) {
+            long witness = visited.compareAndExchange(word, current, current | bit);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
+        return false;
+    }
+}
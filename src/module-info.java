@@ -5,4 +5,8 @@
  * 
  */
 module TextAdventureGameParser {
+    requires transitive java.management; // CommandMetrics is an MXBean
+    requires jdk.management; // Per-thread allocation counters
+
+    exports TextAdventureParser;
 }
\ No newline at end of file